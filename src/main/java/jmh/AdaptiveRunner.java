@@ -0,0 +1,80 @@
+package jmh;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.format.OutputFormat;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.util.ListStatistics;
+
+/**
+ * Run each parameters {@link Combination} of the selected benchmarks one measurement iteration at a time,
+ * each iteration in a JMH run of it's own, and stops once the scores converged.<p>
+ * A combination is stopped when the half-width of the 99.9% confidence interval of the iterations scores,
+ * relative to their mean, is below the target, after at least {@value #MIN_ITERATIONS} iterations. It's also stopped
+ * when the measurement iterations count of the options is reached, or after the given maximum time.<p>
+ * The iterations of a combination are then merged in a single result, as if each was a fork. As every iteration
+ * is warmed up in a new JVM, the variance between forks is accounted for.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class AdaptiveRunner extends CombinationsRunner {
+
+    public static final double DEFAULT_TARGET = 2.0;
+    private static final double CONFIDENCE = 0.999;
+    private static final int MIN_ITERATIONS = 3;
+
+    private final double target;
+    private final long maxTime;
+
+    /**
+     * @param opt the options of the run, only the benchmarks selection, the parameters and the measurement iterations count are changed
+     * @param target the relative error to reach, in percent
+     * @param maxTime the maximum time spent on a combination, in seconds, or 0 for no limit
+     */
+    public AdaptiveRunner(Options opt, double target, long maxTime) {
+        super(opt);
+        this.target = target;
+        this.maxTime = maxTime > 0 ? TimeUnit.SECONDS.toNanos(maxTime) : Long.MAX_VALUE;
+    }
+
+    @Override
+    protected Collection<RunResult> run(Combination combination, OutputFormat out) throws RunnerException {
+        int maxIterations = opt.getMeasurementIterations().orElse(Integer.MAX_VALUE);
+        long start = System.nanoTime();
+        List<BenchmarkResult> iterations = new ArrayList<>();
+        ListStatistics scores = new ListStatistics();
+        RunResult last = null;
+        double error = Double.NaN;
+        while (iterations.size() < maxIterations && System.nanoTime() - start < maxTime) {
+            Collection<RunResult> run = new Runner(options(combination).measurementIterations(1).build(), out).run();
+            if (run.isEmpty()) {
+                // The benchmark failed, and the options don't stop on errors
+                break;
+            }
+            last = run.iterator().next();
+            iterations.addAll(last.getBenchmarkResults());
+            scores.addValue(last.getPrimaryResult().getScore());
+            error = 100.0 * scores.getMeanErrorAt(CONFIDENCE) / Math.abs(scores.getMean());
+            out.println(String.format("Adaptive: %s, %d iterations, relative error %.2f%%", combination, scores.getN(), error));
+            if (scores.getN() >= MIN_ITERATIONS && error <= target) {
+                break;
+            }
+        }
+        if (last == null) {
+            return List.of();
+        } else {
+            out.println(String.format("Adaptive: %s done after %d iterations in %ds, relative error %.2f%%",
+                                      combination, scores.getN(), TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), error));
+            return List.of(new RunResult(last.getParams(), iterations));
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package jmh;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.util.ListStatistics;
+import org.openjdk.jmh.util.Statistics;
+
+/**
+ * Compare the results of a run with the results of a previous run, read from the JSON file written by JMH.<p>
+ * Results are matched on the benchmark, the mode, the thread count and the parameters. For each match,
+ * the scores of the measurement iterations are compared with a Welch's t-test. For the sampling modes, whose JSON results
+ * only hold an histogram of the samples of each iteration, the score of an iteration is the mean of it's samples, like the
+ * score JMH gives to the iteration. A result regresses when the difference
+ * is significant and the score is worse by more than the threshold, lower for a throughput, higher for the other modes.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class Baseline {
+
+    public static final double DEFAULT_CONFIDENCE = 0.99;
+
+    private static class Reference {
+        private final Statistics statistics;
+        private final String unit;
+        Reference(Statistics statistics, String unit) {
+            this.statistics = statistics;
+            this.unit = unit;
+        }
+    }
+
+    private final Map<String, Reference> references = new HashMap<>();
+    private final double confidence;
+
+    public Baseline(Path json) throws IOException {
+        this(json, DEFAULT_CONFIDENCE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Baseline(Path json, double confidence) throws IOException {
+        this.confidence = confidence;
+        for (Object o: (List<Object>) Json.parse(json)) {
+            Map<String, Object> result = (Map<String, Object>) o;
+            Map<String, String> params = new TreeMap<>();
+            ((Map<String, Object>) result.getOrDefault("params", Map.of())).forEach((k, v) -> params.put(k, v.toString()));
+            Map<String, Object> primary = (Map<String, Object>) result.get("primaryMetric");
+            ListStatistics statistics = new ListStatistics();
+            if (primary.containsKey("rawData")) {
+                for (Object fork: (List<Object>) primary.get("rawData")) {
+                    for (Object score: (List<Object>) fork) {
+                        statistics.addValue(Json.toDouble(score));
+                    }
+                }
+            } else if (primary.containsKey("rawDataHistogram")) {
+                // For each fork and each iteration, a list of [value, count]
+                for (Object fork: (List<Object>) primary.get("rawDataHistogram")) {
+                    for (Object iteration: (List<Object>) fork) {
+                        double sum = 0;
+                        double count = 0;
+                        for (Object bucket: (List<Object>) iteration) {
+                            List<Object> valueCount = (List<Object>) bucket;
+                            sum += Json.toDouble(valueCount.get(0)) * Json.toDouble(valueCount.get(1));
+                            count += Json.toDouble(valueCount.get(1));
+                        }
+                        if (count > 0) {
+                            statistics.addValue(sum / count);
+                        }
+                    }
+                }
+            }
+            String key = key(result.get("benchmark").toString(), result.get("mode").toString(), (int) Json.toDouble(result.get("threads")), params);
+            references.put(key, new Reference(statistics, primary.get("scoreUnit").toString()));
+        }
+    }
+
+    /**
+     * Print a table comparing the results with the baseline
+     * @param results
+     * @param threshold the relative change, in percent, that a significant degradation must exceed to be a regression
+     * @param out
+     * @return true if at least one result regresses
+     */
+    public boolean compare(Collection<RunResult> results, double threshold, PrintStream out) {
+        boolean regressed = false;
+        out.format("%-60s %-40s %14s %14s %9s  %s%n", "Benchmark", "Parameters", "Baseline", "Current", "Change", "Verdict");
+        for (RunResult rr: results) {
+            BenchmarkParams params = rr.getParams();
+            Map<String, String> paramsValues = new TreeMap<>();
+            params.getParamsKeys().forEach(k -> paramsValues.put(k, params.getParam(k)));
+            Reference reference = references.get(key(params.getBenchmark(), params.getMode().shortLabel(), params.getThreads(), paramsValues));
+            String paramsLabel = paramsValues.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(","));
+            if (reference == null) {
+                out.format("%-60s %-40s %14s %14.3f %9s  %s%n", params.getBenchmark(), paramsLabel, "-", rr.getPrimaryResult().getScore(), "-", "new");
+                continue;
+            }
+            Statistics current = iterationsStatistics(rr);
+            double baselineScore = reference.statistics.getMean();
+            double change = 100.0 * (current.getMean() - baselineScore) / baselineScore;
+            // For a throughput, higher is better, for times it's lower
+            double gain = params.getMode() == Mode.Throughput ? change : -change;
+            String verdict;
+            if (! rr.getPrimaryResult().getScoreUnit().equals(reference.unit)) {
+                verdict = "unit changed, was " + reference.unit;
+            } else if (reference.statistics.getN() == 0) {
+                verdict = "no raw data in baseline";
+            } else if (current.getN() < 2 || reference.statistics.getN() < 2 || ! current.isDifferent(reference.statistics, confidence)) {
+                verdict = "not significant";
+            } else if (gain >= 0) {
+                verdict = "improved";
+            } else if (-gain > threshold) {
+                verdict = "REGRESSED";
+                regressed = true;
+            } else {
+                verdict = "degraded, within threshold";
+            }
+            out.format("%-60s %-40s %14.3f %14.3f %+8.2f%%  %s%n", params.getBenchmark(), paramsLabel, baselineScore, current.getMean(), change, verdict);
+        }
+        return regressed;
+    }
+
+    /**
+     * The statistics of the measurement iterations scores, like the raw data of the JSON results. For the sampling modes,
+     * the score of an iteration is the mean of it's samples, as read from the histograms of the baseline.
+     */
+    private static Statistics iterationsStatistics(RunResult rr) {
+        boolean sampled = rr.getParams().getMode() == Mode.SampleTime;
+        ListStatistics statistics = new ListStatistics();
+        for (BenchmarkResult br: rr.getBenchmarkResults()) {
+            for (IterationResult ir: br.getIterationResults()) {
+                statistics.addValue(sampled ? ir.getPrimaryResult().getStatistics().getMean() : ir.getPrimaryResult().getScore());
+            }
+        }
+        return statistics;
+    }
+
+    private static String key(String benchmark, String mode, int threads, Map<String, String> params) {
+        return benchmark + " " + mode + " " + threads + " " + params;
+    }
+
+}
@@ -0,0 +1,94 @@
+package jmh;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.runner.BenchmarkList;
+import org.openjdk.jmh.runner.BenchmarkListEntry;
+import org.openjdk.jmh.runner.format.OutputFormat;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import lombok.Getter;
+
+/**
+ * A benchmark in a given mode, with a single value for each of it's parameters, so it's run by JMH as a single run.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+@Getter
+public class Combination {
+
+    private final String benchmark;
+    private final Mode mode;
+    private final Map<String, String> params;
+
+    private Combination(String benchmark, Mode mode, Map<String, String> params) {
+        this.benchmark = benchmark;
+        this.mode = mode;
+        this.params = params;
+    }
+
+    /**
+     * Expand the benchmarks selected by the options in all their parameters combinations.
+     * The parameters given in the options replace the ones declared in the benchmarks.
+     * @param opt
+     * @return
+     */
+    public static List<Combination> resolve(Options opt) {
+        OutputFormat silent = OutputFormatFactory.createFormatInstance(new PrintStream(OutputStream.nullOutputStream()), VerboseMode.SILENT);
+        List<Combination> combinations = new ArrayList<>();
+        for (BenchmarkListEntry entry: BenchmarkList.defaultList().find(silent, opt.getIncludes(), opt.getExcludes())) {
+            Map<String, Collection<String>> values = new LinkedHashMap<>();
+            if (entry.getParams().hasValue()) {
+                entry.getParams().get().forEach((k, v) -> values.put(k, opt.getParameter(k).orElse(List.of(v))));
+            }
+            Collection<Mode> modes = opt.getBenchModes().isEmpty() ? List.of(entry.getMode()) : opt.getBenchModes();
+            for (Mode mode: modes) {
+                expand(entry.getUsername(), mode, new ArrayList<>(values.entrySet()), 0, new LinkedHashMap<>(), combinations);
+            }
+        }
+        return combinations;
+    }
+
+    private static void expand(String benchmark, Mode mode, List<Map.Entry<String, Collection<String>>> values, int rank, Map<String, String> current, List<Combination> combinations) {
+        if (rank == values.size()) {
+            combinations.add(new Combination(benchmark, mode, new LinkedHashMap<>(current)));
+        } else {
+            Map.Entry<String, Collection<String>> e = values.get(rank);
+            for (String value: e.getValue()) {
+                current.put(e.getKey(), value);
+                expand(benchmark, mode, values, rank + 1, current, combinations);
+            }
+            current.remove(e.getKey());
+        }
+    }
+
+    /**
+     * Restrict the options to this combination
+     * @param builder
+     * @return the same builder
+     */
+    public ChainedOptionsBuilder apply(ChainedOptionsBuilder builder) {
+        builder.include("^" + Pattern.quote(benchmark) + "$").mode(mode);
+        params.forEach(builder::param);
+        return builder;
+    }
+
+    @Override
+    public String toString() {
+        return benchmark + " " + mode.shortLabel() + " " + params.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(","));
+    }
+
+}
@@ -0,0 +1,94 @@
+package jmh;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.format.OutputFormat;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+/**
+ * Run a list of parameters {@link Combination}, each in a JMH run of it's own.<p>
+ * All the runs share the same output, and the results are written once all the combinations are done, so
+ * the log and the results files given in the options are not overwritten by each run.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class CombinationsRunner {
+
+    protected final Options opt;
+    private Path runResults;
+
+    /**
+     * @param opt the options of the run, only the benchmarks selection and the parameters are changed
+     */
+    public CombinationsRunner(Options opt) {
+        this.opt = opt;
+    }
+
+    public Collection<RunResult> run(List<Combination> combinations) throws RunnerException, IOException {
+        boolean withResults = opt.getResult().hasValue() || opt.getResultFormat().hasValue();
+        ResultFormatType format = opt.getResultFormat().orElse(ResultFormatType.JSON);
+        // Each run would overwrite the results, they are written once merged
+        runResults = withResults ? Files.createTempFile("jmh-combination", "." + format.toString().toLowerCase(Locale.ENGLISH)) : null;
+        PrintStream stream = opt.getOutput().hasValue() ? new PrintStream(new FileOutputStream(opt.getOutput().get())) : System.out;
+        OutputFormat out = OutputFormatFactory.createFormatInstance(stream, opt.verbosity().orElse(VerboseMode.NORMAL));
+        List<RunResult> results = new ArrayList<>();
+        try {
+            for (Combination combination: combinations) {
+                results.addAll(run(combination, out));
+            }
+        } finally {
+            if (runResults != null) {
+                Files.deleteIfExists(runResults);
+            }
+            if (stream != System.out) {
+                stream.close();
+            }
+        }
+        if (withResults) {
+            ResultFormatFactory.getInstance(format, opt.getResult().orElse("jmh-result." + format.toString().toLowerCase(Locale.ENGLISH))).writeOut(results);
+        }
+        return results;
+    }
+
+    /**
+     * Run a single combination
+     * @param combination
+     * @param out
+     * @return the result, empty if the benchmark failed
+     * @throws RunnerException
+     */
+    protected Collection<RunResult> run(Combination combination, OutputFormat out) throws RunnerException {
+        return new Runner(options(combination).build(), out).run();
+    }
+
+    /**
+     * @param combination
+     * @return the options restricted to the combination
+     */
+    protected ChainedOptionsBuilder options(Combination combination) {
+        ChainedOptionsBuilder builder = combination.apply(new OptionsBuilder().parent(opt));
+        if (runResults != null) {
+            builder.result(runResults.toString());
+        }
+        return builder;
+    }
+
+}
@@ -0,0 +1,239 @@
+package jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal JSON parser, enough to read back the results written by JMH.<p>
+ * Objects are returned as {@link Map}, arrays as {@link List}, numbers as {@link Double}, and
+ * the strings, booleans and null as themselves. JMH writes NaN and infinities as strings, they are
+ * returned as strings too, {@link #toDouble(Object)} resolves them.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class Json {
+
+    private final String text;
+    private int pos = 0;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    public static Object parse(Path path) throws IOException {
+        return parse(Files.readString(path));
+    }
+
+    public static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipSpaces();
+        if (json.pos != text.length()) {
+            throw json.error("Trailing characters");
+        }
+        return value;
+    }
+
+    /**
+     * Resolve a number, as written by JMH
+     * @param value
+     * @return
+     */
+    public static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            return Double.parseDouble((String) value);
+        } else {
+            return Double.NaN;
+        }
+    }
+
+    private Object value() {
+        skipSpaces();
+        if (pos >= text.length()) {
+            throw error("Unexpected end");
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+        case '{':
+            return object();
+        case '[':
+            return array();
+        case '"':
+            return string();
+        case 't':
+            return literal("true", Boolean.TRUE);
+        case 'f':
+            return literal("false", Boolean.FALSE);
+        case 'n':
+            return literal("null", null);
+        default:
+            return number();
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipSpaces();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        do {
+            skipSpaces();
+            String key = string();
+            skipSpaces();
+            expect(':');
+            map.put(key, value());
+            skipSpaces();
+        } while (next() == ',');
+        pos--;
+        expect('}');
+        return map;
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipSpaces();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        do {
+            list.add(value());
+            skipSpaces();
+        } while (next() == ',');
+        pos--;
+        expect(']');
+        return list;
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder buffer = new StringBuilder();
+        char c;
+        while ((c = next()) != '"') {
+            if (c == '\\') {
+                c = next();
+                switch (c) {
+                case 'b': buffer.append('\b'); break;
+                case 'f': buffer.append('\f'); break;
+                case 'n': buffer.append('\n'); break;
+                case 'r': buffer.append('\r'); break;
+                case 't': buffer.append('\t'); break;
+                case 'u':
+                    buffer.append(unicode());
+                    break;
+                default: buffer.append(c); break;
+                }
+            } else {
+                buffer.append(c);
+            }
+        }
+        return buffer.toString();
+    }
+
+    private char unicode() {
+        if (pos + 4 > text.length()) {
+            throw error("Unexpected end");
+        }
+        char c = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(next(), 16);
+            if (digit < 0) {
+                throw error("Invalid unicode escape");
+            }
+            c = (char) (c << 4 | digit);
+        }
+        return c;
+    }
+
+    /**
+     * A number, following the JSON grammar: an optional minus, an integer part without leading zeros,
+     * an optional fraction and an optional exponent
+     */
+    private Double number() {
+        int start = pos;
+        accept('-');
+        // A leading zero is not followed by other digits
+        if (! accept('0') && digits() == 0) {
+            throw error("Invalid number");
+        }
+        if (accept('.') && digits() == 0) {
+            throw error("Invalid number");
+        }
+        if (accept('e') || accept('E')) {
+            if (! accept('+')) {
+                accept('-');
+            }
+            if (digits() == 0) {
+                throw error("Invalid number");
+            }
+        }
+        return Double.valueOf(text.substring(start, pos));
+    }
+
+    private int digits() {
+        int start = pos;
+        while (pos < text.length() && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+            pos++;
+        }
+        return pos - start;
+    }
+
+    private boolean accept(char c) {
+        if (pos < text.length() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private Object literal(String literal, Object value) {
+        if (! text.startsWith(literal, pos)) {
+            throw error("Invalid literal");
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    private void skipSpaces() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= text.length()) {
+            throw error("Unexpected end");
+        }
+        return text.charAt(pos);
+    }
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + pos);
+    }
+
+}
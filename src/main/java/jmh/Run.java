@@ -2,17 +2,24 @@ package jmh;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.openjdk.jmh.infra.BenchmarkParams;
 import org.openjdk.jmh.profile.Profiler;
 import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
 import org.openjdk.jmh.results.format.ResultFormatType;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
@@ -20,9 +27,17 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.TimeValue;
 
+import jmh.history.HistoryEntry;
+import jmh.history.HistoryStore;
+import jmh.history.Trend;
+import jmh.perf.EventCounterProfiler;
+import jmh.perf.JfrProfiler;
+import jmh.perf.LatencyProfiler;
+import jmh.perf.MemoryProfiler;
 import jmh.perf.RmiProvider;
 import jmh.plot.Plotter;
 import jmh.plot.PlottingClass;
+import jmh.plot.ScalingPlotter;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
@@ -46,6 +61,29 @@ public class Run {
                                                   .withOptionalArg().ofType(String.class);
         OptionSpec<String> profilerOption = parser.acceptsAll(Set.of("p", "profiler"), "Add the given class name as a profiler")
                                                    .withOptionalArg().ofType(String.class);
+        OptionSpec<Integer> threadsOption = parser.acceptsAll(Set.of("t", "threads"), "Run the benchmarks for each thread count in the comma separated list")
+                                                  .withRequiredArg().ofType(Integer.class).withValuesSeparatedBy(',');
+        OptionSpec<String> baselineOption = parser.acceptsAll(Set.of("b", "baseline"), "Compare the results with the given json file, and fails on a regression")
+                                                  .withRequiredArg().ofType(String.class);
+        OptionSpec<Double> thresholdOption = parser.acceptsAll(Set.of("threshold"), "The degradation in percent that fails a baseline comparison")
+                                                   .withRequiredArg().ofType(Double.class).defaultsTo(5.0);
+        OptionSpec<Double> adaptiveOption = parser.acceptsAll(Set.of("a", "adaptive"), "Run each parameters combination until the relative error, in percent, is reached")
+                                                  .withOptionalArg().ofType(Double.class);
+        OptionSpec<Integer> maxTimeOption = parser.acceptsAll(Set.of("maxTime"), "The maximum time, in seconds, spent on each combination in adaptive mode")
+                                                  .withRequiredArg().ofType(Integer.class).defaultsTo(0);
+        OptionSpec<String> jfrOption      = parser.acceptsAll(Set.of("jfr"), "Record each benchmark with JFR in the given directory, and summarize the recordings")
+                                                  .withOptionalArg().ofType(String.class);
+        OptionSpec<String> paramOption    = parser.acceptsAll(Set.of("P", "param"), "Replace the values of a benchmark parameter, as name=v1,v2")
+                                                  .withRequiredArg().ofType(String.class);
+        OptionSpec<Integer> shardsOption  = parser.acceptsAll(Set.of("shards"), "Split the parameters combinations in concurrent shards, pinned to disjoint CPUs")
+                                                  .withRequiredArg().ofType(Integer.class);
+        OptionSpec<String> shardOption    = parser.acceptsAll(Set.of("shard"), "Run only the given shard, as index/count, used by --shards")
+                                                  .withRequiredArg().ofType(String.class);
+        OptionSpec<String> shardResultsOption = parser.acceptsAll(Set.of("shardResults"), "The file where a shard saves its results, used by --shards")
+                                                      .withRequiredArg().ofType(String.class);
+        OptionSpec<String> historyOption  = parser.acceptsAll(Set.of("history"), "The directory of the results history, where each run is saved")
+                                                  .withRequiredArg().ofType(String.class).defaultsTo(HistoryStore.DEFAULT_DIRECTORY);
+        parser.acceptsAll(Set.of("trend"), "Print the history of the given benchmarks, filtered by -P and -t, and plot it with -s");
         OptionSet options = parser.parse(args);
         options.nonOptionArguments();
 
@@ -54,7 +92,20 @@ public class Run {
             System.exit(0);
         }
 
-        if (options.has(rmiOption)) {
+        if (options.has("trend")) {
+            Trend trend = new Trend();
+            new HistoryStore(Paths.get(options.valueOf(historyOption))).scan(historyFilter(options, paramOption, threadsOption), trend::addEntry);
+            trend.print(System.out);
+            if (options.has(svgNameOption)) {
+                trend.drawSvg(Optional.ofNullable(options.valueOf(svgNameOption)).orElse("jmh.svg"));
+            }
+            return;
+        }
+
+        // A shard is run by Run itself, the log, json and RMI server are handled by the main process
+        boolean shard = options.has(shardOption);
+
+        if (options.has(rmiOption) && ! shard) {
             RmiProvider.start();
         }
 
@@ -63,21 +114,18 @@ public class Run {
         long measurementTime;
         int measurementIterations;
         int forks;
-        int msgSend;
         if (options.has("f")) {
             warmupTime = 1;
             warmupIterations = 1;
             measurementTime = 1;
             measurementIterations = 5;
             forks = 1;
-            msgSend = 2;
         } else {
             warmupTime = 1;
             warmupIterations = 10;
             measurementTime = 60;
             measurementIterations = 20;
             forks = 1;
-            msgSend = 1000;
         }
 
         ChainedOptionsBuilder builder = new OptionsBuilder()
@@ -87,24 +135,35 @@ public class Run {
                 .measurementIterations(measurementIterations)
                 .measurementTime(TimeValue.seconds(measurementTime))
                 .threads(1)
-                .operationsPerInvocation(1)
+                // Operations per invocation are not set, so the benchmarks' @OperationsPerInvocation are used
                 .shouldDoGC(true)
-                .param("msgSend", Integer.toString(msgSend))
                 .forks(forks);
 
         options.nonOptionArguments().stream().map(Object::toString).forEach(builder::include);
 
-        if (options.has(logfileOption)) {
-            String logfile = options.valueOf(logfileOption);
+        options.valuesOf(paramOption).stream().map(Run::splitParam).forEach(p -> builder.param(p.getKey(), p.getValue()));
+
+        if (options.has(logfileOption) && ! shard) {
+            String logfile = Optional.ofNullable(options.valueOf(logfileOption)).orElse("jmh.log");
             builder.output(logfile);
         }
 
-        if (options.has(jsonfileOption)) {
+        if (options.has(jsonfileOption) && ! shard) {
             String jsonfile = options.valueOf(jsonfileOption);
             builder.result(jsonfile);
             builder.resultFormat(ResultFormatType.JSON);
         }
 
+        // Reports the latency histograms and the event counters, does nothing if no benchmark uses them
+        builder.addProfiler(LatencyProfiler.class);
+        builder.addProfiler(EventCounterProfiler.class);
+        // The memory footprint is always reported
+        builder.addProfiler(MemoryProfiler.class);
+
+        if (options.has(jfrOption)) {
+            builder.addProfiler(JfrProfiler.class, Optional.ofNullable(options.valueOf(jfrOption)).orElse(JfrProfiler.DEFAULT_DIRECTORY));
+        }
+
         if (options.has(profilerOption)) {
             Class<Profiler> profilerClass = findProfilerClass(options.valueOf(profilerOption));
             builder.addProfiler(profilerClass);
@@ -112,9 +171,81 @@ public class Run {
 
         Options opt = builder.build();
 
-        Collection<RunResult> results = new Runner(opt).run();
+        // Read before the run, so an invalid baseline is detected early
+        Baseline baseline = options.has(baselineOption) && ! shard ? new Baseline(Paths.get(options.valueOf(baselineOption))) : null;
 
-        if (options.has(svgNameOption)) {
+        List<Integer> threadCounts = options.has(threadsOption) ? options.valuesOf(threadsOption) : List.of(1);
+        Collection<RunResult> results = new ArrayList<>();
+        boolean incomplete = false;
+        if (options.has(shardsOption)) {
+            Shards shards = new Shards(options.valueOf(shardsOption));
+            results.addAll(shards.run(withoutOption(args, "shards"), Optional.ofNullable(options.valueOf(logfileOption)).orElse("jmh.log")));
+            if (! shards.isComplete()) {
+                System.out.println("Some shards failed, the results are incomplete");
+                incomplete = true;
+            }
+            if (options.has(jsonfileOption)) {
+                // The results of the shards are merged, for each thread count
+                String jsonfile = Optional.ofNullable(options.valueOf(jsonfileOption)).orElse("jmh-result.json");
+                for (int threads: threadCounts) {
+                    List<RunResult> threadsResults = results.stream().filter(rr -> rr.getParams().getThreads() == threads).collect(Collectors.toList());
+                    String threadsJsonfile = threadCounts.size() > 1 ? suffixed(jsonfile, threads + "t") : jsonfile;
+                    ResultFormatFactory.getInstance(ResultFormatType.JSON, threadsJsonfile).writeOut(threadsResults);
+                }
+            }
+        } else {
+            for (int threads: threadCounts) {
+                ChainedOptionsBuilder threadsBuilder = new OptionsBuilder().parent(opt).threads(threads);
+                if (threadCounts.size() > 1 && ! shard) {
+                    // Each thread count has it's own log and json files
+                    if (options.has(logfileOption)) {
+                        threadsBuilder.output(suffixed(Optional.ofNullable(options.valueOf(logfileOption)).orElse("jmh.log"), threads + "t"));
+                    }
+                    if (options.has(jsonfileOption)) {
+                        threadsBuilder.result(suffixed(Optional.ofNullable(options.valueOf(jsonfileOption)).orElse("jmh-result.json"), threads + "t"));
+                    }
+                }
+                Options threadsOpt = threadsBuilder.build();
+                CombinationsRunner runner;
+                if (options.has(adaptiveOption)) {
+                    double target = Optional.ofNullable(options.valueOf(adaptiveOption)).orElse(AdaptiveRunner.DEFAULT_TARGET);
+                    runner = new AdaptiveRunner(threadsOpt, target, options.valueOf(maxTimeOption));
+                } else {
+                    runner = new CombinationsRunner(threadsOpt);
+                }
+                if (shard) {
+                    results.addAll(runner.run(Shards.select(Combination.resolve(threadsOpt), options.valueOf(shardOption))));
+                } else if (options.has(adaptiveOption)) {
+                    results.addAll(runner.run(Combination.resolve(threadsOpt)));
+                } else {
+                    results.addAll(new Runner(threadsOpt).run());
+                }
+            }
+            if (shard) {
+                Shards.save(results, Paths.get(options.valueOf(shardResultsOption)));
+                return;
+            }
+        }
+
+        // Incomplete results would be a misleading point in the trends
+        if (! results.isEmpty() && ! incomplete) {
+            new HistoryStore(Paths.get(options.valueOf(historyOption))).append(results);
+        }
+
+        if (options.has(jfrOption)) {
+            results.forEach(rr -> JfrProfiler.printSummary(rr, System.out));
+        }
+
+        boolean regressed = false;
+        if (baseline != null) {
+            regressed = baseline.compare(results, options.valueOf(thresholdOption), System.out);
+        }
+
+        if (options.has(svgNameOption) && threadCounts.size() > 1) {
+            Plotter scaling = new ScalingPlotter();
+            results.forEach(scaling::addResult);
+            scaling.drawSvg(options.valueOf(svgNameOption));
+        } else if (options.has(svgNameOption)) {
             String svgName = options.valueOf(svgNameOption);
             Pattern benchPattern = Pattern.compile("^([\\p{Alpha}_$][\\p{Alpha}\\p{Digit}_$\\.]*)\\.([\\p{Alpha}_$][\\p{Alpha}\\p{Digit}_$]+)$");
             Map<String, Plotter> plotters = new HashMap<>();
@@ -134,8 +265,64 @@ public class Run {
                 }
             });
         }
+
+        if (regressed || incomplete) {
+            System.exit(1);
+        }
     }
     
+    /**
+     * Add a suffix to a file name, before the extension
+     */
+    static String suffixed(String filename, String suffix) {
+        int dot = filename.lastIndexOf('.');
+        if (dot > filename.lastIndexOf('/')) {
+            return filename.substring(0, dot) + "-" + suffix + filename.substring(dot);
+        } else {
+            return filename + "-" + suffix;
+        }
+    }
+
+    /**
+     * Split a parameter given as name=v1,v2
+     */
+    private static Map.Entry<String, String[]> splitParam(String param) {
+        int equal = param.indexOf('=');
+        if (equal <= 0) {
+            throw new IllegalArgumentException("Invalid parameter " + param + ", expected name=v1,v2");
+        }
+        return Map.entry(param.substring(0, equal), param.substring(equal + 1).split(","));
+    }
+
+    /**
+     * Select the history entries of the benchmarks matching the command line arguments, with the parameters and thread counts given
+     */
+    private static Predicate<HistoryEntry> historyFilter(OptionSet options, OptionSpec<String> paramOption, OptionSpec<Integer> threadsOption) {
+        List<Pattern> includes = options.nonOptionArguments().stream().map(Object::toString).map(Pattern::compile).collect(Collectors.toList());
+        Map<String, List<String>> params = new HashMap<>();
+        options.valuesOf(paramOption).stream().map(Run::splitParam).forEach(p -> params.put(p.getKey(), List.of(p.getValue())));
+        List<Integer> threads = options.valuesOf(threadsOption);
+        return e -> (includes.isEmpty() || includes.stream().anyMatch(p -> p.matcher(e.getBenchmark()).find()))
+                    && params.entrySet().stream().allMatch(p -> p.getValue().contains(e.getParams().get(p.getKey())))
+                    && (threads.isEmpty() || threads.contains(e.getThreads()));
+    }
+
+    /**
+     * Remove an option with a required value from the command line arguments
+     */
+    private static List<String> withoutOption(String[] args, String option) {
+        List<String> filtered = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--" + option)) {
+                // skip the value too
+                i++;
+            } else if (! args[i].startsWith("--" + option + "=")) {
+                filtered.add(args[i]);
+            }
+        }
+        return filtered;
+    }
+
     @SuppressWarnings("unchecked")
     private static Class<Profiler> findProfilerClass(String profilerName) {
         try {
@@ -0,0 +1,183 @@
+package jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * Split the parameters combinations of a run in shards, each one run concurrently by a JVM of it's own.<p>
+ * On Linux, each shard is started with <code>taskset</code> on a disjoint set of whole cores, that the JMH forks inherit, so
+ * the shards don't compete for the same cores, the SMT siblings of a core are always in the same shard. The results of the
+ * shards are saved serialized, and gathered once they are all finished. If a shard fails, the results are incomplete.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class Shards {
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+    private static final Pattern CPUS_PATTERN = Pattern.compile("^Cpus_allowed_list:\\s+(\\S+)$", Pattern.MULTILINE);
+    private static final Path TASKSET = Paths.get("/usr/bin/taskset");
+    private static final Path CPUS_DIRECTORY = Paths.get("/sys/devices/system/cpu");
+
+    private final int count;
+    private int failed = 0;
+
+    public Shards(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Invalid shards count " + count);
+        }
+        this.count = count;
+    }
+
+    /**
+     * Start the shards, wait for them and gather their results
+     * @param arguments the arguments of {@link Run} given to each shard
+     * @param logFile the name of the output of the shards, suffixed with the shard number
+     * @return the results of all the successful shards, see {@link #isComplete()}
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public Collection<RunResult> run(List<String> arguments, String logFile) throws IOException, InterruptedException {
+        List<String> cpuSets = Files.isExecutable(TASKSET) ? cpuSets() : null;
+        if (cpuSets == null) {
+            System.out.println("taskset not available, the shards are not pinned");
+        }
+        Path resultsDir = Files.createTempDirectory("jmh-shards");
+        List<Process> processes = new ArrayList<>(count);
+        List<Path> resultsFiles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<String> command = new ArrayList<>();
+            if (cpuSets != null) {
+                command.addAll(List.of(TASKSET.toString(), "-c", cpuSets.get(i)));
+            }
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            // The shards run concurrently, JMH's lock must be ignored
+            command.add("-Djmh.ignoreLock=true");
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), Run.class.getName()));
+            command.addAll(arguments);
+            Path resultsFile = resultsDir.resolve("shard" + i + ".results");
+            command.addAll(List.of("--shard", i + "/" + count, "--shardResults", resultsFile.toString()));
+            File log = new File(Run.suffixed(logFile, "shard" + i));
+            System.out.format("Shard %d on CPUs %s, output in %s%n", i, cpuSets != null ? cpuSets.get(i) : "any", log);
+            processes.add(new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start());
+            resultsFiles.add(resultsFile);
+        }
+        Collection<RunResult> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int status = processes.get(i).waitFor();
+            if (status != 0 || ! Files.isReadable(resultsFiles.get(i))) {
+                System.out.format("Shard %d failed with status %d%n", i, status);
+                failed++;
+            } else {
+                results.addAll(load(resultsFiles.get(i)));
+                Files.delete(resultsFiles.get(i));
+            }
+        }
+        Files.deleteIfExists(resultsDir);
+        return results;
+    }
+
+    /**
+     * @return true if all the shards of the last run succeeded and saved their results
+     */
+    public boolean isComplete() {
+        return failed == 0;
+    }
+
+    /**
+     * @param combinations all the combinations of the run
+     * @param shard the shard, as <code>index/count</code>
+     * @return the combinations run by the shard
+     */
+    public static List<Combination> select(List<Combination> combinations, String shard) {
+        String[] parts = shard.split("/");
+        int index = Integer.parseInt(parts[0]);
+        int count = Integer.parseInt(parts[1]);
+        return IntStream.range(0, combinations.size()).filter(i -> i % count == index).mapToObj(combinations::get).collect(Collectors.toList());
+    }
+
+    public static void save(Collection<RunResult> results, Path path) throws IOException {
+        try (OutputStream os = Files.newOutputStream(path); ObjectOutputStream oos = new ObjectOutputStream(os)) {
+            oos.writeObject(new ArrayList<>(results));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<RunResult> load(Path path) throws IOException {
+        try (InputStream is = Files.newInputStream(path); ObjectInputStream ois = new ObjectInputStream(is)) {
+            return (Collection<RunResult>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable results " + path, e);
+        }
+    }
+
+    /**
+     * Split the CPUs usable by this process in disjoint sets of consecutive cores. The CPUs are grouped by core, using
+     * the <code>thread_siblings_list</code> of the sysfs topology, so the SMT siblings of a core are never split between shards.
+     * @return the sets, in the taskset list format
+     */
+    private List<String> cpuSets() throws IOException {
+        List<Integer> cpus;
+        Matcher m = Files.isReadable(PROC_STATUS) ? CPUS_PATTERN.matcher(Files.readString(PROC_STATUS)) : null;
+        if (m != null && m.find()) {
+            cpus = parseList(m.group(1));
+        } else {
+            cpus = IntStream.range(0, Runtime.getRuntime().availableProcessors()).boxed().collect(Collectors.toList());
+        }
+        // The usable CPUs of each core, keyed by the core's siblings list
+        Map<String, List<Integer>> cores = new LinkedHashMap<>();
+        for (int cpu: cpus) {
+            Path siblings = CPUS_DIRECTORY.resolve("cpu" + cpu).resolve("topology").resolve("thread_siblings_list");
+            String core = Files.isReadable(siblings) ? Files.readString(siblings).trim() : String.valueOf(cpu);
+            cores.computeIfAbsent(core, k -> new ArrayList<>()).add(cpu);
+        }
+        if (cores.size() < count) {
+            throw new IllegalArgumentException("Only " + cores.size() + " cores for " + count + " shards");
+        }
+        List<List<Integer>> coresList = new ArrayList<>(cores.values());
+        List<String> sets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sets.add(coresList.subList(i * coresList.size() / count, (i + 1) * coresList.size() / count).stream()
+                              .flatMap(List::stream)
+                              .sorted()
+                              .map(String::valueOf)
+                              .collect(Collectors.joining(",")));
+        }
+        return sets;
+    }
+
+    /**
+     * Parse a CPU list, like <code>0-3,8-11</code>
+     */
+    private static List<Integer> parseList(String list) {
+        List<Integer> cpus = new ArrayList<>();
+        for (String range: list.split(",")) {
+            String[] bounds = range.split("-");
+            int first = Integer.parseInt(bounds[0]);
+            int last = Integer.parseInt(bounds[bounds.length - 1]);
+            IntStream.rangeClosed(first, last).forEach(cpus::add);
+        }
+        return cpus;
+    }
+
+}
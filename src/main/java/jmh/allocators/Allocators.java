@@ -0,0 +1,68 @@
+package jmh.allocators;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import zmq.Msg;
+import zmq.msg.MsgAllocator;
+import zmq.msg.MsgAllocatorDirect;
+import zmq.msg.MsgAllocatorHeap;
+
+/**
+ * Resolve the allocator names used as benchmark parameters.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class Allocators {
+
+    // The batched reference allocators are named nettyXXXReferenceBatch_<batchSize>x<workers>
+    private static final Pattern BATCHREFERENCE = Pattern.compile("netty(Heap|Direct)ReferenceBatch_(\\d+)x(\\d+)");
+
+    private Allocators() {
+    }
+
+    public static MsgAllocator resolve(String allocator) {
+        Matcher m = BATCHREFERENCE.matcher(allocator);
+        if (m.matches()) {
+            return new NettyAllocatorReference(new PooledByteBufAllocator("Direct".equals(m.group(1))), Integer.parseInt(m.group(3)), Integer.parseInt(m.group(2)));
+        }
+        switch (allocator) {
+        case "nettyHeapReference":
+            return new NettyAllocatorReference(new PooledByteBufAllocator(false), 4);
+        case "nettyDirectReference":
+            return new NettyAllocatorReference(new PooledByteBufAllocator(true), 4);
+        case "nettyHeapCleaner":
+            return new NettyAllocatorCleaner(new PooledByteBufAllocator(false));
+        case "nettyDirectCleaner":
+            return new NettyAllocatorCleaner(new PooledByteBufAllocator(true));
+        case "nettyHeapRelease":
+            return new NettyAllocatorRelease(new PooledByteBufAllocator(false));
+        case "nettyDirectRelease":
+            return new NettyAllocatorRelease(new PooledByteBufAllocator(true));
+        case "slab":
+            return new SlabAllocator();
+        case "mapped":
+            return new MappedAllocator();
+        case "heap":
+            return new MsgAllocatorHeap();
+        case "direct":
+            return new MsgAllocatorDirect();
+        default:
+            throw new IllegalArgumentException("Unknown allocator " + allocator);
+        }
+    }
+
+    /**
+     * Release a message if the allocator is a {@link ReleasableAllocator}, otherwise do nothing
+     * @param allocator
+     * @param msg
+     */
+    public static void release(MsgAllocator allocator, Msg msg) {
+        if (allocator instanceof ReleasableAllocator) {
+            ((ReleasableAllocator) allocator).release(msg);
+        }
+    }
+
+}
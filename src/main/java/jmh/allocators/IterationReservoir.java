@@ -0,0 +1,57 @@
+package jmh.allocators;
+
+import java.util.concurrent.atomic.LongAccumulator;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformReservoir;
+import com.codahale.metrics.UniformSnapshot;
+
+/**
+ * A reservoir that only holds the values updated since it was last cleared, so the percentiles of an histogram
+ * or a timer are the ones of the current iteration. The values are sampled uniformly, but the maximum is exact.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+class IterationReservoir implements Reservoir {
+
+    private static class Sample {
+        private final UniformReservoir values = new UniformReservoir();
+        private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    }
+
+    private volatile Sample sample = new Sample();
+
+    @Override
+    public int size() {
+        return sample.values.size();
+    }
+
+    @Override
+    public void update(long value) {
+        Sample current = sample;
+        current.values.update(value);
+        current.max.accumulate(value);
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        Sample current = sample;
+        long max = current.max.get();
+        return new UniformSnapshot(current.values.getSnapshot().getValues()) {
+            @Override
+            public long getMax() {
+                return size() == 0 ? 0 : max;
+            }
+        };
+    }
+
+    /**
+     * Drop the values, the ones updated concurrently might be lost.
+     */
+    void clear() {
+        sample = new Sample();
+    }
+
+}
@@ -0,0 +1,225 @@
+package jmh.allocators;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import jmh.ThreadBuilder;
+import zmq.Msg;
+
+/**
+ * An allocator that hands out slices of a ring of memory mapped from a file, so big messages
+ * are neither on the heap nor counted in the direct memory.<p>
+ * The ring is divided in pages of {@value #PAGE_SIZE} bytes, and a slice is a run of free pages, searched from the end
+ * of the last slice and wrapping around. The used pages are tracked in a bitmap, so a slice is reclaimed as soon as it's
+ * released, whatever it's position in the ring. A message that stays alive, like a query sent over TCP that only the GC
+ * reclaims, only keeps it's own pages.<p>
+ * If no run of free pages is big enough, a heap message is returned, and counted in the <code>overflowCount</code> meter.<p>
+ * The ring is shrunk to the space available in the directory, as touching a page beyond the free space of a tmpfs kills the JVM
+ * with a SIGBUS. The default directory is <code>/dev/shm</code>, if it has enough space for the whole ring.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class MappedAllocator extends MetricsAllocator implements ReleasableAllocator {
+
+    static private final Counter usedCount = metrics.counter(MetricRegistry.name(MappedAllocator.class, "usedCount"));
+    static private final Counter usedBytes = metrics.counter(MetricRegistry.name(MappedAllocator.class, "usedBytes"));
+    static private final Meter releasedCount = metrics.meter(MetricRegistry.name(MappedAllocator.class, "releasedCount"));
+    static private final Meter phantomCount = metrics.meter(MetricRegistry.name(MappedAllocator.class, "collectedCount"));
+    static private final Meter overflowCount = metrics.meter(MetricRegistry.name(MappedAllocator.class, "overflowCount"));
+
+    public static final int DEFAULT_RING_SIZE = 1 << 30;
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private static class MappedSlice extends PhantomReference<Msg> {
+        private final int firstPage;
+        private final int pages;
+        private boolean released = false;
+        MappedSlice(Msg referent, int firstPage, int pages, ReferenceQueue<Msg> q) {
+            super(referent, q);
+            this.firstPage = firstPage;
+            this.pages = pages;
+        }
+    }
+
+    private static class MappedMsg extends Msg {
+        private MappedSlice slice;
+        MappedMsg(ByteBuffer buffer) {
+            super(buffer);
+        }
+    }
+
+    private final ReferenceQueue<Msg> queue = new ReferenceQueue<>();
+    private final MappedByteBuffer ring;
+    private final int pagesCount;
+    // A set bit for each used page
+    private final BitSet usedPages;
+    // Live slices, keeps the phantoms reachable
+    private final Set<MappedSlice> slices = new HashSet<>();
+    // Where the search for free pages starts
+    private int cursor = 0;
+
+    public MappedAllocator() {
+        this(defaultDirectory(), DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * @param directory the directory where the backing file is created, it should be a tmpfs or a local file system
+     * @param ringSize the size of the mapped ring, it's reduced to the usable space of the directory
+     */
+    public MappedAllocator(Path directory, int ringSize) {
+        try {
+            long usable = Files.getFileStore(directory).getUsableSpace() & -PAGE_SIZE;
+            if (usable < PAGE_SIZE) {
+                throw new IllegalStateException("No space for a mapped ring in " + directory);
+            }
+            int size = (int) Math.min(ringSize, usable);
+            Path backing = Files.createTempFile(directory, "jeromqperf", ".ring");
+            try (FileChannel channel = FileChannel.open(backing, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ring = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                // The mapping stay valid, the file will be freed when the buffer is collected
+                Files.delete(backing);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        pagesCount = ring.capacity() >> PAGE_SHIFT;
+        usedPages = new BitSet(pagesCount);
+        ThreadBuilder.get().setDaemon(true).setTask(this::cleaner).setPriority(Thread.MAX_PRIORITY - 2).setName("ZMQMappedCleaner" + count.incrementAndGet()).build(true);
+    }
+
+    private static Path defaultDirectory() {
+        Path shm = Paths.get("/dev/shm");
+        if (Files.isDirectory(shm) && Files.isWritable(shm) && usableSpace(shm) >= DEFAULT_RING_SIZE) {
+            return shm;
+        } else {
+            return Paths.get(System.getProperty("java.io.tmpdir"));
+        }
+    }
+
+    private static long usableSpace(Path directory) {
+        try {
+            return Files.getFileStore(directory).getUsableSpace();
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    @Override
+    public Msg allocate(int size) {
+        if (size == 0) {
+            return new Msg(0);
+        }
+        int pages = (int) ((size + (long) PAGE_SIZE - 1) >> PAGE_SHIFT);
+        MappedMsg msg;
+        synchronized (slices) {
+            int firstPage = reserve(pages);
+            if (firstPage < 0) {
+                overflowCount.mark();
+                return new Msg(size);
+            }
+            int offset = firstPage << PAGE_SHIFT;
+            ByteBuffer buffer = ring.duplicate();
+            buffer.limit(offset + size).position(offset);
+            msg = new MappedMsg(buffer.slice());
+            msg.slice = new MappedSlice(msg, firstPage, pages, queue);
+            slices.add(msg.slice);
+            usedPages.set(firstPage, firstPage + pages);
+            cursor = firstPage + pages;
+        }
+        usedCount.inc();
+        usedBytes.inc((long) pages << PAGE_SHIFT);
+        return msg;
+    }
+
+    /**
+     * Find a run of free pages, from the cursor to the end of the ring, and then from the start
+     * @param pages
+     * @return the first page of the run, or -1 if the ring is full
+     */
+    private int reserve(int pages) {
+        int firstPage = find(cursor, pagesCount, pages);
+        if (firstPage < 0) {
+            // wrap around, the run can overlap the cursor
+            firstPage = find(0, Math.min(cursor + pages - 1, pagesCount), pages);
+        }
+        return firstPage;
+    }
+
+    private int find(int from, int to, int pages) {
+        int start = usedPages.nextClearBit(from);
+        while (start + pages <= to) {
+            int end = usedPages.nextSetBit(start);
+            if (end < 0 || end >= start + pages) {
+                return start;
+            }
+            start = usedPages.nextClearBit(end);
+        }
+        return -1;
+    }
+
+    @Override
+    public void release(Msg msg) {
+        if (msg instanceof MappedMsg) {
+            MappedSlice slice = ((MappedMsg) msg).slice;
+            if (free(slice)) {
+                // No need to enqueue it any more
+                slice.clear();
+                releasedCount.mark();
+            }
+        }
+    }
+
+    private void cleaner() {
+        while (true) {
+            try {
+                MappedSlice slice = (MappedSlice) queue.remove();
+                if (free(slice)) {
+                    phantomCount.mark();
+                }
+            } catch (InterruptedException e) {
+                // never stopping
+            }
+        }
+    }
+
+    /**
+     * Give back the pages of the slice, only the first call for a given message does something.
+     * @param slice
+     * @return true if the slice was released by this call
+     */
+    private boolean free(MappedSlice slice) {
+        synchronized (slices) {
+            if (slice.released) {
+                return false;
+            }
+            slice.released = true;
+            slices.remove(slice);
+            usedPages.clear(slice.firstPage, slice.firstPage + slice.pages);
+        }
+        usedCount.dec();
+        usedBytes.dec((long) slice.pages << PAGE_SHIFT);
+        return true;
+    }
+
+}
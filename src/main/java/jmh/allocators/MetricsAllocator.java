@@ -1,6 +1,11 @@
 package jmh.allocators;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.jmx.JmxReporter;
 
 import zmq.msg.MsgAllocator;
@@ -12,5 +17,49 @@ public abstract class MetricsAllocator implements MsgAllocator {
     static {
         reporter.start();
     }
+    // The reservoirs of the histograms and the timers
+    static private final List<IterationReservoir> reservoirs = new CopyOnWriteArrayList<>();
+    // The release lag and the live buffers cost a clock read and counters updates for each message, they are tracked on demand
+    static private volatile boolean tracking = false;
+
+    /**
+     * @return the registry shared by all the allocators
+     */
+    public static MetricRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Drop the values of the histograms and the timers, so their percentiles are given for the next iteration only
+     */
+    public static void clearReservoirs() {
+        reservoirs.forEach(IterationReservoir::clear);
+    }
+
+    /**
+     * Track the release lag and the live buffers of the allocators, only the buffers allocated afterward are tracked
+     * @param tracking
+     */
+    public static void setTracking(boolean tracking) {
+        MetricsAllocator.tracking = tracking;
+    }
+
+    static boolean isTracking() {
+        return tracking;
+    }
+
+    static Histogram histogram(Class<?> klass, String name) {
+        return metrics.histogram(MetricRegistry.name(klass, name), () -> new Histogram(newReservoir()));
+    }
+
+    static Timer timer(Class<?> klass, String name) {
+        return metrics.timer(MetricRegistry.name(klass, name), () -> new Timer(newReservoir()));
+    }
+
+    private static IterationReservoir newReservoir() {
+        IterationReservoir reservoir = new IterationReservoir();
+        reservoirs.add(reservoir);
+        return reservoir;
+    }
 
 }
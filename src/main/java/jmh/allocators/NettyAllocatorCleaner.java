@@ -2,9 +2,12 @@ package jmh.allocators;
 
 import java.lang.ref.Cleaner;
 import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -16,16 +19,20 @@ public class NettyAllocatorCleaner extends MetricsAllocator {
 
     static private final Meter phantomCount = metrics.meter(MetricRegistry.name(NettyAllocatorCleaner.class, "collectedCount"));
     static private final Meter phantomBytes = metrics.meter(MetricRegistry.name(NettyAllocatorCleaner.class, "collectedBytes"));
+    static private final Timer releaseLag = timer(NettyAllocatorCleaner.class, "releaseLag");
+    static private final Counter liveCount = metrics.counter(MetricRegistry.name(NettyAllocatorCleaner.class, "liveCount"));
+    static private final Counter liveBytes = metrics.counter(MetricRegistry.name(NettyAllocatorCleaner.class, "liveBytes"));
 
     private final ByteBufAllocator allocator;
     private final Cleaner cleaner = Cleaner.create(ThreadBuilder.get().setPriority(Thread.MAX_PRIORITY - 2).getFactory("NettyAllocatorCleaner"));
 
     public NettyAllocatorCleaner() {
-        allocator = new PooledByteBufAllocator(false);
+        this(new PooledByteBufAllocator(false));
     }
 
     public NettyAllocatorCleaner(ByteBufAllocator allocator) {
         this.allocator = allocator;
+        NettyPoolMetrics.add(allocator);
     }
 
     @Override
@@ -41,7 +48,14 @@ public class NettyAllocatorCleaner extends MetricsAllocator {
             jbuffer.limit(size);
             assert buffer.nioBufferCount() == 1;
             Msg msg = new Msg(jbuffer);
-            cleaner.register(msg, () -> destroy(buffer));
+            if (isTracking()) {
+                long allocated = System.nanoTime();
+                cleaner.register(msg, () -> destroy(buffer, allocated));
+                liveCount.inc();
+                liveBytes.inc(size);
+            } else {
+                cleaner.register(msg, () -> destroy(buffer));
+            }
             return msg;
         }
     }
@@ -52,4 +66,12 @@ public class NettyAllocatorCleaner extends MetricsAllocator {
         phantom.release();
     }
 
+    private void destroy(ByteBuf phantom, long allocated) {
+        int size = phantom.capacity();
+        destroy(phantom);
+        releaseLag.update(System.nanoTime() - allocated, TimeUnit.NANOSECONDS);
+        liveCount.dec();
+        liveBytes.dec(size);
+    }
+
 }
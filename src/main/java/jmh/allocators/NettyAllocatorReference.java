@@ -1,17 +1,25 @@
 package jmh.allocators;
 
 import java.lang.ref.PhantomReference;
-import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -23,40 +31,124 @@ public class NettyAllocatorReference extends MetricsAllocator {
 
     static private final Meter phantomCount = metrics.meter(MetricRegistry.name(NettyAllocatorReference.class, "collectedCount"));
     static private final Meter phantomBytes = metrics.meter(MetricRegistry.name(NettyAllocatorReference.class, "collectedBytes"));
+    static private final Histogram batchSizes = histogram(NettyAllocatorReference.class, "batchSize");
+    static private final Timer releaseLag = timer(NettyAllocatorReference.class, "releaseLag");
+    static private final Counter liveCount = metrics.counter(MetricRegistry.name(NettyAllocatorReference.class, "liveCount"));
+    static private final Counter liveBytes = metrics.counter(MetricRegistry.name(NettyAllocatorReference.class, "liveBytes"));
 
     private static class PhantomMsg extends PhantomReference<Msg> {
         private final ByteBuf buffer;
-        public PhantomMsg(Msg referent, ByteBuf buffer,
+        private final int stripe;
+        private final boolean tracked = isTracking();
+        private final long allocated = tracked ? System.nanoTime() : 0;
+        // Links in the stripe, only used in batch mode
+        private PhantomMsg next;
+        private PhantomMsg previous;
+        public PhantomMsg(Msg referent, ByteBuf buffer, int stripe,
                           ReferenceQueue<Msg> q) {
             super(referent, q);
             this.buffer = buffer;
+            this.stripe = stripe;
+        }
+    }
+
+    /**
+     * The live phantoms of a stripe, in batch mode. The allocating threads push them on a lock-free stack, that the stripe worker
+     * moves to it's own list before releasing a batch, so the release of a phantom needs no synchronization.
+     */
+    private static class Stripe {
+        private final AtomicReference<PhantomMsg> pushed = new AtomicReference<>();
+        // Only used by the stripe worker
+        private PhantomMsg head;
+
+        private void add(PhantomMsg phantom) {
+            PhantomMsg top;
+            do {
+                top = pushed.get();
+                phantom.next = top;
+            } while (! pushed.compareAndSet(top, phantom));
+        }
+
+        private void remove(List<PhantomMsg> batch) {
+            PhantomMsg phantom = pushed.getAndSet(null);
+            while (phantom != null) {
+                PhantomMsg next = phantom.next;
+                phantom.previous = null;
+                phantom.next = head;
+                if (head != null) {
+                    head.previous = phantom;
+                }
+                head = phantom;
+                phantom = next;
+            }
+            for (PhantomMsg p: batch) {
+                if (p.previous != null) {
+                    p.previous.next = p.next;
+                } else {
+                    head = p.next;
+                }
+                if (p.next != null) {
+                    p.next.previous = p.previous;
+                }
+                p.next = null;
+                p.previous = null;
+            }
         }
     }
 
     private static final AtomicInteger count = new AtomicInteger();
 
     private final ReferenceQueue<Msg> queue = new ReferenceQueue<>();
-    private final Set<Reference<Msg>> phs = ConcurrentHashMap.newKeySet();
+    // The live phantoms, in a single set or in stripes for the batch mode
+    private final Set<PhantomMsg> phs;
+    private final List<Stripe> stripes;
     private final ByteBufAllocator allocator;
     private final ExecutorService executorService;
+    private final ExecutorService[] stripeExecutors;
+    private final int batchSize;
 
     public NettyAllocatorReference(int workers) {
-        ThreadBuilder.get().setDaemon(true).setTask(this::cleaner).setPriority(Thread.MAX_PRIORITY - 2).setName("ZMQNettyCleaner" + count.incrementAndGet()).build(true);
-        allocator = new PooledByteBufAllocator(false); //PooledByteBufAllocator.DEFAULT;
-        if (workers > 1) {
-            executorService = Executors.newFixedThreadPool(workers, ThreadBuilder.get().getFactory("NettyAllocatorCleaner" + count.get()));
-        } else {
-            executorService = null;
-        }
+        this(new PooledByteBufAllocator(false), workers); //PooledByteBufAllocator.DEFAULT;
     }
 
     public NettyAllocatorReference(ByteBufAllocator allocator, int workers) {
+        this(allocator, workers, 1);
+    }
+
+    /**
+     * If batchSize is more than 1, the reference queue is drained in batches of at most this size,
+     * each batch is then split in stripes, one for each worker. Each worker track it's own stripe of live phantoms, in a list
+     * that only it reads.
+     * @param allocator
+     * @param workers
+     * @param batchSize
+     */
+    public NettyAllocatorReference(ByteBufAllocator allocator, int workers, int batchSize) {
         ThreadBuilder.get().setDaemon(true).setTask(this::cleaner).setPriority(Thread.MAX_PRIORITY - 2).setName("ZMQNettyCleaner" + count.incrementAndGet()).build(true);
         this.allocator = allocator;
-        if (workers > 1) {
-            executorService = Executors.newFixedThreadPool(workers, ThreadBuilder.get().getFactory("NettyAllocatorCleaner" + count.get()));
-        } else {
+        this.batchSize = batchSize;
+        NettyPoolMetrics.add(allocator);
+        if (batchSize > 1) {
             executorService = null;
+            phs = null;
+            stripes = new ArrayList<>(Math.max(workers, 1));
+            stripeExecutors = workers > 1 ? new ExecutorService[workers] : null;
+            ThreadFactory factory = ThreadBuilder.get().getFactory("NettyAllocatorCleaner" + count.get());
+            for (int i = 0; i < Math.max(workers, 1); i++) {
+                stripes.add(new Stripe());
+                if (stripeExecutors != null) {
+                    stripeExecutors[i] = Executors.newSingleThreadExecutor(factory);
+                }
+            }
+        } else {
+            phs = ConcurrentHashMap.newKeySet();
+            stripes = null;
+            stripeExecutors = null;
+            if (workers > 1) {
+                executorService = Executors.newFixedThreadPool(workers, ThreadBuilder.get().getFactory("NettyAllocatorCleaner" + count.get()));
+            } else {
+                executorService = null;
+            }
         }
     }
 
@@ -73,7 +165,19 @@ public class NettyAllocatorReference extends MetricsAllocator {
             jbuffer.limit(size);
             assert buffer.nioBufferCount() == 1;
             Msg msg = new Msg(jbuffer);
-            phs.add(new PhantomMsg(msg, buffer, queue));
+            PhantomMsg phantom;
+            if (stripes == null) {
+                phantom = new PhantomMsg(msg, buffer, 0, queue);
+                phs.add(phantom);
+            } else {
+                int stripe = stripes.size() > 1 ? ThreadLocalRandom.current().nextInt(stripes.size()) : 0;
+                phantom = new PhantomMsg(msg, buffer, stripe, queue);
+                stripes.get(stripe).add(phantom);
+            }
+            if (phantom.tracked) {
+                liveCount.inc();
+                liveBytes.inc(size);
+            }
             return msg;
         }
     }
@@ -82,7 +186,9 @@ public class NettyAllocatorReference extends MetricsAllocator {
         while (true) {
             try {
                 PhantomMsg phantom = (PhantomMsg) queue.remove();
-                if (executorService != null) {
+                if (batchSize > 1) {
+                    drain(phantom);
+                } else if (executorService != null) {
                     executorService.execute(() -> destroy(phantom));
                 } else {
                     destroy(phantom);
@@ -93,11 +199,66 @@ public class NettyAllocatorReference extends MetricsAllocator {
         }
     }
 
+    /**
+     * Take all the waiting phantoms, up to batchSize, and dispatch them to the stripe workers
+     * @param first the phantom already taken from the queue
+     */
+    private void drain(PhantomMsg first) {
+        List<List<PhantomMsg>> batches = new ArrayList<>(stripes.size());
+        for (int i = 0; i < stripes.size(); i++) {
+            batches.add(new ArrayList<>());
+        }
+        int drained = 0;
+        PhantomMsg phantom = first;
+        do {
+            batches.get(phantom.stripe).add(phantom);
+        } while (++drained < batchSize && (phantom = (PhantomMsg) queue.poll()) != null);
+        batchSizes.update(drained);
+        for (int i = 0; i < batches.size(); i++) {
+            List<PhantomMsg> batch = batches.get(i);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            Stripe stripe = stripes.get(i);
+            if (stripeExecutors != null) {
+                stripeExecutors[i].execute(() -> destroy(stripe, batch));
+            } else {
+                destroy(stripe, batch);
+            }
+        }
+    }
+
     private void destroy(PhantomMsg phantom) {
+        int size = phantom.buffer.capacity();
         phantomCount.mark();
-        phantomBytes.mark(phantom.buffer.capacity());
+        phantomBytes.mark(size);
         phantom.buffer.release();
         phs.remove(phantom);
+        released(phantom, size);
+    }
+
+    private void destroy(Stripe stripe, List<PhantomMsg> batch) {
+        long bytes = 0;
+        for (PhantomMsg phantom: batch) {
+            int size = phantom.buffer.capacity();
+            bytes += size;
+            phantom.buffer.release();
+            released(phantom, size);
+        }
+        stripe.remove(batch);
+        phantomCount.mark(batch.size());
+        phantomBytes.mark(bytes);
+    }
+
+    /**
+     * Update the lag and the live buffers metrics, if the phantom was tracked
+     */
+    private void released(PhantomMsg phantom, int size) {
+        if (phantom.tracked) {
+            releaseLag.update(System.nanoTime() - phantom.allocated, TimeUnit.NANOSECONDS);
+            liveCount.dec();
+            liveBytes.dec(size);
+        }
     }
 
 }
@@ -0,0 +1,131 @@
+package jmh.allocators;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import jmh.ThreadBuilder;
+import zmq.Msg;
+
+/**
+ * A pooled allocator that return the buffer to the pool as soon as the message is explicitly released.
+ * Messages that escape, like the one sent by clients, are still returned to the pool when collected.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class NettyAllocatorRelease extends MetricsAllocator implements ReleasableAllocator {
+
+    static private final Meter releasedCount = metrics.meter(MetricRegistry.name(NettyAllocatorRelease.class, "releasedCount"));
+    static private final Meter releasedBytes = metrics.meter(MetricRegistry.name(NettyAllocatorRelease.class, "releasedBytes"));
+    static private final Meter phantomCount = metrics.meter(MetricRegistry.name(NettyAllocatorRelease.class, "collectedCount"));
+    static private final Meter phantomBytes = metrics.meter(MetricRegistry.name(NettyAllocatorRelease.class, "collectedBytes"));
+
+    private static class PhantomMsg extends PhantomReference<Msg> {
+        private final ByteBuf buffer;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        public PhantomMsg(Msg referent, ByteBuf buffer,
+                          ReferenceQueue<Msg> q) {
+            super(referent, q);
+            this.buffer = buffer;
+        }
+    }
+
+    private static class PooledMsg extends Msg {
+        private PhantomMsg phantom;
+        PooledMsg(ByteBuffer buffer) {
+            super(buffer);
+        }
+    }
+
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private final ReferenceQueue<Msg> queue = new ReferenceQueue<>();
+    private final Set<PhantomMsg> phs = ConcurrentHashMap.newKeySet();
+    private final ByteBufAllocator allocator;
+
+    public NettyAllocatorRelease() {
+        this(new PooledByteBufAllocator(false));
+    }
+
+    public NettyAllocatorRelease(ByteBufAllocator allocator) {
+        ThreadBuilder.get().setDaemon(true).setTask(this::cleaner).setPriority(Thread.MAX_PRIORITY - 2).setName("ZMQNettyReleaser" + count.incrementAndGet()).build(true);
+        this.allocator = allocator;
+        NettyPoolMetrics.add(allocator);
+    }
+
+    @Override
+    public Msg allocate(int size) {
+        if (size == 0) {
+            return new Msg(0);
+        } else {
+            ByteBuf buffer = allocator.buffer(size);
+            buffer.capacity(size);
+            buffer.writerIndex(size);
+            ByteBuffer jbuffer = buffer.nioBuffer();
+            jbuffer.position(0);
+            jbuffer.limit(size);
+            assert buffer.nioBufferCount() == 1;
+            PooledMsg msg = new PooledMsg(jbuffer);
+            msg.phantom = new PhantomMsg(msg, buffer, queue);
+            phs.add(msg.phantom);
+            return msg;
+        }
+    }
+
+    @Override
+    public void release(Msg msg) {
+        if (msg instanceof PooledMsg) {
+            PhantomMsg phantom = ((PooledMsg) msg).phantom;
+            int size = destroy(phantom);
+            if (size >= 0) {
+                // No need to enqueue it any more
+                phantom.clear();
+                releasedCount.mark();
+                releasedBytes.mark(size);
+            }
+        }
+    }
+
+    private void cleaner() {
+        while (true) {
+            try {
+                PhantomMsg phantom = (PhantomMsg) queue.remove();
+                int size = destroy(phantom);
+                if (size >= 0) {
+                    phantomCount.mark();
+                    phantomBytes.mark(size);
+                }
+            } catch (InterruptedException e) {
+                // never stopping
+            }
+        }
+    }
+
+    /**
+     * Release the buffer, only the first call does something.
+     * @param phantom
+     * @return the size of the buffer released by this call, or -1 if it was already released
+     */
+    private int destroy(PhantomMsg phantom) {
+        if (phantom.released.compareAndSet(false, true)) {
+            phs.remove(phantom);
+            int size = phantom.buffer.capacity();
+            phantom.buffer.release();
+            return size;
+        } else {
+            return -1;
+        }
+    }
+
+}
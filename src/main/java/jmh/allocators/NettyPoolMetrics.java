@@ -0,0 +1,84 @@
+package jmh.allocators;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.ToLongFunction;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+
+/**
+ * Export the {@link PooledByteBufAllocatorMetric} of the netty pools used by the allocators in the shared registry.
+ * Each gauge is the sum over all the live pools.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+class NettyPoolMetrics {
+
+    private static final Set<PooledByteBufAllocatorMetric> pools = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    static {
+        register("heapArenas", PooledByteBufAllocatorMetric::numHeapArenas);
+        register("directArenas", PooledByteBufAllocatorMetric::numDirectArenas);
+        register("threadCaches", PooledByteBufAllocatorMetric::numThreadLocalCaches);
+        register("usedHeapBytes", PooledByteBufAllocatorMetric::usedHeapMemory);
+        register("usedDirectBytes", PooledByteBufAllocatorMetric::usedDirectMemory);
+        register("activeAllocations", p -> sumArenas(p, PoolArenaMetric::numActiveAllocations));
+        register("activeBytes", p -> sumArenas(p, PoolArenaMetric::numActiveBytes));
+        register("chunks", p -> sumChunks(p, c -> 1));
+        register("chunksBytes", p -> sumChunks(p, PoolChunkMetric::chunkSize));
+        register("chunksFreeBytes", p -> sumChunks(p, PoolChunkMetric::freeBytes));
+    }
+
+    private NettyPoolMetrics() {
+    }
+
+    /**
+     * Add the pool of an allocator to the exported metrics, if it's a {@link PooledByteBufAllocator}
+     * @param allocator
+     */
+    static void add(ByteBufAllocator allocator) {
+        if (allocator instanceof PooledByteBufAllocator) {
+            pools.add(((PooledByteBufAllocator) allocator).metric());
+        }
+    }
+
+    private static void register(String name, ToLongFunction<PooledByteBufAllocatorMetric> metric) {
+        MetricsAllocator.metrics.register(MetricRegistry.name(NettyPoolMetrics.class, name), (Gauge<Long>) () -> {
+            synchronized (pools) {
+                return pools.stream().mapToLong(metric).sum();
+            }
+        });
+    }
+
+    private static long sumArenas(PooledByteBufAllocatorMetric pool, ToLongFunction<PoolArenaMetric> metric) {
+        return sumArenas(pool.heapArenas(), metric) + sumArenas(pool.directArenas(), metric);
+    }
+
+    private static long sumArenas(List<PoolArenaMetric> arenas, ToLongFunction<PoolArenaMetric> metric) {
+        return arenas.stream().mapToLong(metric).sum();
+    }
+
+    private static long sumChunks(PooledByteBufAllocatorMetric pool, ToLongFunction<PoolChunkMetric> metric) {
+        return sumArenas(pool, a -> {
+            long sum = 0;
+            for (PoolChunkListMetric chunkList: a.chunkLists()) {
+                for (PoolChunkMetric chunk: chunkList) {
+                    sum += metric.applyAsLong(chunk);
+                }
+            }
+            return sum;
+        });
+    }
+
+}
@@ -0,0 +1,22 @@
+package jmh.allocators;
+
+import zmq.Msg;
+import zmq.msg.MsgAllocator;
+
+/**
+ * A {@link MsgAllocator} that can take back the buffer of a message as soon as it's not used any more,
+ * without waiting for the GC to find it.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public interface ReleasableAllocator extends MsgAllocator {
+
+    /**
+     * Give back the buffer used by the message. The message must not be used after that.
+     * Messages not allocated by this allocator are ignored.
+     * @param msg the message to release
+     */
+    void release(Msg msg);
+
+}
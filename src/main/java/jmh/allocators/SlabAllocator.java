@@ -0,0 +1,211 @@
+package jmh.allocators;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import jmh.ThreadBuilder;
+import zmq.Msg;
+
+/**
+ * An allocator that carve power of two size classes from large direct chunks.<p>
+ * Each thread has it's own free lists, that only it can read. Slots released by another thread,
+ * like the ZMQ I/O thread or the cleaner thread, are pushed back on a lock-free stack
+ * of the owner thread, and given back to it's free list when it's empty.<p>
+ * Messages bigger than the biggest size class are not pooled.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class SlabAllocator extends MetricsAllocator implements ReleasableAllocator {
+
+    static private final Counter chunksCount = metrics.counter(MetricRegistry.name(SlabAllocator.class, "chunksCount"));
+    static private final Counter chunksBytes = metrics.counter(MetricRegistry.name(SlabAllocator.class, "chunksBytes"));
+    static private final Counter usedCount = metrics.counter(MetricRegistry.name(SlabAllocator.class, "usedCount"));
+    static private final Counter usedBytes = metrics.counter(MetricRegistry.name(SlabAllocator.class, "usedBytes"));
+    static private final Meter releasedCount = metrics.meter(MetricRegistry.name(SlabAllocator.class, "releasedCount"));
+    static private final Meter phantomCount = metrics.meter(MetricRegistry.name(SlabAllocator.class, "collectedCount"));
+    static private final Meter unpooledCount = metrics.meter(MetricRegistry.name(SlabAllocator.class, "unpooledCount"));
+
+    private static final int MIN_SHIFT = 6;
+    private static final int MAX_SHIFT = 17;
+    private static final int CLASSES = MAX_SHIFT - MIN_SHIFT + 1;
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int MIN_SLOTS_PER_CHUNK = 16;
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private static class Slot {
+        private static final AtomicReferenceFieldUpdater<Slot, PhantomSlot> PHANTOM = AtomicReferenceFieldUpdater.newUpdater(Slot.class, PhantomSlot.class, "phantom");
+        private final ByteBuffer buffer;
+        private final ThreadCache owner;
+        private final int sizeClass;
+        // The phantom of the message currently using this slot, null when free
+        private volatile PhantomSlot phantom;
+        // Link in the free lists
+        private Slot next;
+        Slot(ByteBuffer buffer, ThreadCache owner, int sizeClass) {
+            this.buffer = buffer;
+            this.owner = owner;
+            this.sizeClass = sizeClass;
+        }
+    }
+
+    private static class PhantomSlot extends PhantomReference<Msg> {
+        private final Slot slot;
+        PhantomSlot(Msg referent, Slot slot, ReferenceQueue<Msg> q) {
+            super(referent, q);
+            this.slot = slot;
+        }
+    }
+
+    private static class SlabMsg extends Msg {
+        private final PhantomSlot phantom;
+        SlabMsg(ByteBuffer buffer, Slot slot, ReferenceQueue<Msg> q) {
+            super(buffer);
+            phantom = new PhantomSlot(this, slot, q);
+        }
+    }
+
+    private static class ThreadCache {
+        private final Thread thread = Thread.currentThread();
+        // Only used by the owner thread
+        private final Slot[] freeLists = new Slot[CLASSES];
+        // Slots given back by other threads
+        private final AtomicReferenceArray<Slot> returned = new AtomicReferenceArray<>(CLASSES);
+        // Keeps every slot reachable, so the phantoms they hold are not lost
+        private final List<Slot[]> chunks = new ArrayList<>();
+
+        private Slot pop(int sizeClass) {
+            Slot slot = freeLists[sizeClass];
+            if (slot == null) {
+                // Take all the slots returned by other threads at once
+                slot = returned.getAndSet(sizeClass, null);
+                if (slot == null) {
+                    slot = carve(sizeClass);
+                }
+            }
+            freeLists[sizeClass] = slot.next;
+            slot.next = null;
+            return slot;
+        }
+
+        private void push(Slot slot) {
+            slot.next = freeLists[slot.sizeClass];
+            freeLists[slot.sizeClass] = slot;
+        }
+
+        private void pushRemote(Slot slot) {
+            Slot head;
+            do {
+                head = returned.get(slot.sizeClass);
+                slot.next = head;
+            } while (! returned.compareAndSet(slot.sizeClass, head, slot));
+        }
+
+        private Slot carve(int sizeClass) {
+            int slotSize = 1 << (sizeClass + MIN_SHIFT);
+            int chunkSize = Math.max(CHUNK_SIZE, slotSize * MIN_SLOTS_PER_CHUNK);
+            ByteBuffer chunk = ByteBuffer.allocateDirect(chunkSize);
+            Slot[] slots = new Slot[chunkSize / slotSize];
+            Slot head = null;
+            for (int i = slots.length - 1; i >= 0; i--) {
+                chunk.limit((i + 1) * slotSize).position(i * slotSize);
+                slots[i] = new Slot(chunk.slice(), this, sizeClass);
+                slots[i].next = head;
+                head = slots[i];
+            }
+            chunks.add(slots);
+            chunksCount.inc();
+            chunksBytes.inc(chunkSize);
+            return head;
+        }
+    }
+
+    private final ReferenceQueue<Msg> queue = new ReferenceQueue<>();
+    private final ThreadLocal<ThreadCache> caches = ThreadLocal.withInitial(ThreadCache::new);
+
+    public SlabAllocator() {
+        ThreadBuilder.get().setDaemon(true).setTask(this::cleaner).setPriority(Thread.MAX_PRIORITY - 2).setName("ZMQSlabCleaner" + count.incrementAndGet()).build(true);
+    }
+
+    @Override
+    public Msg allocate(int size) {
+        if (size == 0) {
+            return new Msg(0);
+        } else if (size > 1 << MAX_SHIFT) {
+            unpooledCount.mark();
+            return new Msg(ByteBuffer.allocateDirect(size));
+        } else {
+            int sizeClass = sizeClass(size);
+            Slot slot = caches.get().pop(sizeClass);
+            // jeromq's encoder uses the capacity of the buffer, not it's limit, so it must be sliced
+            slot.buffer.clear().limit(size);
+            SlabMsg msg = new SlabMsg(slot.buffer.slice(), slot, queue);
+            slot.phantom = msg.phantom;
+            usedCount.inc();
+            usedBytes.inc(slot.buffer.capacity());
+            return msg;
+        }
+    }
+
+    @Override
+    public void release(Msg msg) {
+        if (msg instanceof SlabMsg) {
+            PhantomSlot phantom = ((SlabMsg) msg).phantom;
+            if (free(phantom)) {
+                // No need to enqueue it any more
+                phantom.clear();
+                releasedCount.mark();
+            }
+        }
+    }
+
+    private void cleaner() {
+        while (true) {
+            try {
+                PhantomSlot phantom = (PhantomSlot) queue.remove();
+                if (free(phantom)) {
+                    phantomCount.mark();
+                }
+            } catch (InterruptedException e) {
+                // never stopping
+            }
+        }
+    }
+
+    /**
+     * Give back the slot to it's owner, only the first call for a given message does something.
+     * @param phantom
+     * @return true if the slot was freed by this call
+     */
+    private boolean free(PhantomSlot phantom) {
+        Slot slot = phantom.slot;
+        if (Slot.PHANTOM.compareAndSet(slot, phantom, null)) {
+            usedCount.dec();
+            usedBytes.dec(slot.buffer.capacity());
+            if (slot.owner.thread == Thread.currentThread()) {
+                slot.owner.push(slot);
+            } else {
+                slot.owner.pushRemote(slot);
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    static int sizeClass(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+    }
+
+}
@@ -1,6 +1,10 @@
 package jmh.bench.allocators;
 
+import jmh.allocators.Allocators;
 import jmh.perf.BenchmarkContext;
+import jmh.perf.ContextTopology;
+import jmh.perf.LatencyHistogram;
+import jmh.perf.Transport;
 import jmh.perf.ZMQFactory;
 import zmq.Ctx;
 import zmq.Msg;
@@ -15,19 +19,58 @@ import zmq.msg.MsgAllocator;
 public class AllocatorFactory implements ZMQFactory {
 
     private final MsgAllocator na;
+    private final int ioThreads;
+    private final ContextTopology topology;
+    private final String url;
+    private final LatencyHistogram inFlight;
 
-    AllocatorFactory(MsgAllocator na) {
+    public AllocatorFactory(MsgAllocator na) {
+        this(na, 1, ContextTopology.SHARED);
+    }
+
+    /**
+     * @param na the allocator used by the sockets and for the queries
+     * @param inFlight if not null, the queries are stamped and the server records their in-flight time in it
+     */
+    public AllocatorFactory(MsgAllocator na, LatencyHistogram inFlight) {
+        this(na, 1, ContextTopology.SHARED, Transport.TCP, inFlight);
+    }
+
+    public AllocatorFactory(MsgAllocator na, int ioThreads, ContextTopology topology) {
+        this(na, ioThreads, topology, Transport.TCP);
+    }
+
+    /**
+     * @param na the allocator used by the sockets and for the queries
+     * @param ioThreads the number of I/O threads of each context
+     * @param topology how the contexts are shared
+     * @param transport the transport between the clients and the server
+     */
+    public AllocatorFactory(MsgAllocator na, int ioThreads, ContextTopology topology, Transport transport) {
+        this(na, ioThreads, topology, transport, null);
+    }
+
+    private AllocatorFactory(MsgAllocator na, int ioThreads, ContextTopology topology, Transport transport, LatencyHistogram inFlight) {
         this.na = na;
+        this.ioThreads = ioThreads;
+        this.topology = topology;
+        this.url = transport.getEndpoint();
+        this.inFlight = inFlight;
     }
 
     @Override
     public Ctx getContext() {
-        return ZMQ.init(1);
+        return ZMQ.init(ioThreads);
+    }
+
+    @Override
+    public ContextTopology getContextTopology() {
+        return topology;
     }
 
     @Override
     public String getUrl() {
-        return "tcp://127.0.0.1:13800";
+        return url;
     }
 
     @Override
@@ -47,7 +90,8 @@ public class AllocatorFactory implements ZMQFactory {
 
     @Override
     public Msg getQueryMsg(int msgSize) {
-        return na.allocate(msgSize);
+        Msg msg = na.allocate(msgSize);
+        return inFlight != null ? BenchmarkContext.stamp(msg) : msg;
     }
 
     @Override
@@ -55,6 +99,11 @@ public class AllocatorFactory implements ZMQFactory {
         return null;
     }
 
+    @Override
+    public void releaseMsg(Msg msg) {
+        Allocators.release(na, msg);
+    }
+
     @Override
     public boolean withServer() {
         return true;
@@ -65,6 +114,11 @@ public class AllocatorFactory implements ZMQFactory {
         return false;
     }
 
+    @Override
+    public LatencyHistogram getInFlightHistogram() {
+        return inFlight;
+    }
+
     @Override
     public ServerProcessing getServerProcessing(BenchmarkContext ctx) {
         return ctx::consume;
@@ -13,10 +13,13 @@ import org.openjdk.jmh.util.Statistics;
 
 import jmh.plot.BoxPlot;
 import jmh.plot.Draw;
+import jmh.plot.PercentilesPlotter;
 
 public class Plotter implements jmh.plot.Plotter {
 
     private final Map<String, Map<String, RunResult>> resultsMap = new HashMap<>();
+    // The one-way latency of the stamped runs
+    private final PercentilesPlotter latency = new PercentilesPlotter(ZmqState.LATENCY);
 
     public Plotter() {
     }
@@ -26,7 +29,14 @@ public class Plotter implements jmh.plot.Plotter {
         BenchmarkParams params = rr.getParams();
         String allocator = params.getParam("allocator");
         String msgSize = params.getParam("msgSize");
-        resultsMap.computeIfAbsent(msgSize, k -> new TreeMap<>(nodeComparator)).put(allocator, rr);
+        // One plot for each benchmark method and message size
+        String benchmark = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1);
+        String run = benchmark + "-" + msgSize;
+        if (Boolean.parseBoolean(params.getParam("stamped"))) {
+            run += "-stamped";
+            latency.addResult(rr);
+        }
+        resultsMap.computeIfAbsent(run, k -> new TreeMap<>(nodeComparator)).put(allocator, rr);
     }
 
     public void drawSvg(String svgName) throws IOException {
@@ -44,6 +54,7 @@ public class Plotter implements jmh.plot.Plotter {
             }
             draw(svgName, m.getKey(), max, plots);
         }
+        latency.drawSvg(svgName);
     }
 
     private BoxPlot makeBoxPlot(String name, RunResult rr) {
@@ -61,7 +72,7 @@ public class Plotter implements jmh.plot.Plotter {
 
     private void draw(String svgName, String runName, double max, BoxPlot... plots) throws IOException {
         svgName = svgName.replace(".svg", "");
-        Draw.generate(svgName + "-" + runName + ".svg", 0, max, (int)Math.pow(10,Math.ceil(Math.log10(max/10))), 1000.0/max, "", " op/s", plots);
+        Draw.generate(svgName + "-" + runName + ".svg", 0, max, Draw.interval(max), 1000.0/max, "", " op/s", plots);
     }
 
     public static final Comparator<String> nodeComparator = (firstString, secondString) -> {
@@ -5,18 +5,39 @@ import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 
 import jmh.plot.PlottingClass;
 
+/**
+ * The PUSH/PULL benchmarks, and a batched query/answer one. With <code>-P stamped=true</code>, the time from the query
+ * creation to it's consumption by the server is given by the secondary results {@value ZmqState#LATENCY}.p*
+ */
 @PlottingClass(plotter = Plotter.class)
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.SECONDS)
 public class Push {
 
+    // The number of messages sent by each invocation of the batch benchmarks. It can't be a @Param, as JMH needs the
+    // operations per invocation of each benchmark before the run, so the batch size is read back from it.
+    public static final int MSGSEND = 1000;
+
     @Benchmark
     public void fireAndForget(ZmqState state, ThreadState threadState) throws Exception {
         state.zctx.simpleSendMessage(threadState.s.getSocket(), state.msgSize);
     }
 
+    @Benchmark
+    @OperationsPerInvocation(MSGSEND)
+    public void fireAndForgetBatch(ZmqState state, ThreadState threadState) throws Exception {
+        state.zctx.simpleSendMessages(threadState.s.getSocket(), state.msgSize, threadState.msgSend);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MSGSEND)
+    public void queryAnswerBatch(QueryState state, QueryThreadState threadState) throws Exception {
+        state.zctx.queryAnswerMessages(threadState.s.getSocket(), state.msgSize, threadState.msgSend);
+    }
+
 }
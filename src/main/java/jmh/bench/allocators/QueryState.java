@@ -0,0 +1,22 @@
+package jmh.bench.allocators;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import jmh.bench.latency.LatencyFactory;
+import jmh.perf.ZMQFactory;
+import zmq.msg.MsgAllocator;
+
+/**
+ * The same parameters than {@link ZmqState}, but the server answers each query, with a DEALER/ROUTER pair.
+ * The queries are never stamped.
+ */
+@State(Scope.Benchmark)
+public class QueryState extends ZmqState {
+
+    @Override
+    protected ZMQFactory getFactory(MsgAllocator na) {
+        return new LatencyFactory(na, "dealerrouter", 0);
+    }
+
+}
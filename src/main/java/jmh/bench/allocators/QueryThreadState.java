@@ -0,0 +1,30 @@
+package jmh.bench.allocators;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import jmh.perf.BenchmarkContext.StatefullSocket;
+
+@State(Scope.Thread)
+public class QueryThreadState {
+
+    StatefullSocket s;
+    // The number of messages sent by each invocation of a batch benchmark
+    int msgSend;
+
+    @Setup(Level.Trial)
+    public void newClientSocket(QueryState globalState, BenchmarkParams params) {
+        s = globalState.zctx.getSocketState();
+        msgSend = params.getOpsPerInvocation();
+    }
+
+    @TearDown
+    public void close(QueryState globalState) {
+        s.close();
+    }
+
+}
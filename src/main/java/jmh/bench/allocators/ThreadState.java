@@ -5,6 +5,7 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
 
 import jmh.perf.BenchmarkContext.StatefullSocket;
 
@@ -12,10 +13,13 @@ import jmh.perf.BenchmarkContext.StatefullSocket;
 public class ThreadState {
 
     StatefullSocket s;
+    // The number of messages sent by each invocation of a batch benchmark
+    int msgSend;
 
     @Setup(Level.Trial)
-    public void newClientSocket(ZmqState globalState) {
+    public void newClientSocket(ZmqState globalState, BenchmarkParams params) {
         s = globalState.zctx.getSocketState();
+        msgSend = params.getOpsPerInvocation();
     }
 
     @TearDown
@@ -6,46 +6,35 @@ import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 
-import io.netty.buffer.PooledByteBufAllocator;
-import jmh.allocators.NettyAllocatorCleaner;
-import jmh.allocators.NettyAllocatorReference;
+import jmh.allocators.Allocators;
 import jmh.perf.BenchmarkContext;
+import jmh.perf.LatencyHistogram;
+import jmh.perf.ZMQFactory;
 import zmq.msg.MsgAllocator;
-import zmq.msg.MsgAllocatorDirect;
-import zmq.msg.MsgAllocatorHeap;
 
 @State(Scope.Benchmark)
 public class ZmqState {
 
+    // The histogram of the one-way latency of the stamped queries
+    public static final String LATENCY = "oneWay";
+
     @Param({"0", "1", "100", "10000", "100000", "10000000"})
     public int msgSize;
-    @Param({"nettyHeapReference", "nettyDirectReference", "nettyHeapCleaner", "nettyDirectCleaner", "heap", "direct"})
+    @Param({"nettyHeapReference", "nettyDirectReference", "nettyHeapReferenceBatch_256x4", "nettyDirectReferenceBatch_256x4", "nettyHeapCleaner", "nettyDirectCleaner", "nettyHeapRelease", "nettyDirectRelease", "slab", "mapped", "heap", "direct"})
     public String allocator;
+    // The queries are stamped, so the server records their in-flight time, -P stamped=true enables it
+    @Param({"false"})
+    public boolean stamped;
 
     BenchmarkContext zctx;
 
-    private MsgAllocator getAllocator() {
-        switch (allocator) {
-        case "nettyHeapReference":
-            return new NettyAllocatorReference(new PooledByteBufAllocator(false), 4);
-        case "nettyDirectReference":
-            return new NettyAllocatorReference(new PooledByteBufAllocator(true), 4);
-        case "nettyHeapCleaner":
-            return new NettyAllocatorCleaner(new PooledByteBufAllocator(false));
-        case "nettyDirectCleaner":
-            return new NettyAllocatorCleaner(new PooledByteBufAllocator(true));
-        case "heap":
-            return new MsgAllocatorHeap();
-        case "direct":
-            return new MsgAllocatorDirect();
-        default:
-            throw new IllegalArgumentException("Unknown allocator " + allocator);
-        }
-    }
-    
     @Setup
     public void setup() {
-        zctx = new BenchmarkContext(new AllocatorFactory(getAllocator()));
+        zctx = new BenchmarkContext(getFactory(Allocators.resolve(allocator)));
+    }
+
+    protected ZMQFactory getFactory(MsgAllocator na) {
+        return new AllocatorFactory(na, stamped ? LatencyHistogram.get(LATENCY) : null);
     }
 
     @TearDown
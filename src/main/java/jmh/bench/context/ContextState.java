@@ -0,0 +1,39 @@
+package jmh.bench.context;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.allocators.Allocators;
+import jmh.bench.allocators.AllocatorFactory;
+import jmh.perf.BenchmarkContext;
+import jmh.perf.ContextTopology;
+
+@State(Scope.Benchmark)
+public class ContextState {
+
+    @Param({"100", "10000", "1000000"})
+    public int msgSize;
+    @Param({"nettyDirectRelease", "slab", "heap"})
+    public String allocator;
+    // The number of I/O threads in each context
+    @Param({"1", "2", "4"})
+    public int ioThreads;
+    @Param({"SHARED", "PER_THREAD", "SERVER"})
+    public ContextTopology topology;
+
+    BenchmarkContext zctx;
+
+    @Setup
+    public void setup() {
+        zctx = new BenchmarkContext(new AllocatorFactory(Allocators.resolve(allocator), ioThreads, topology));
+    }
+
+    @TearDown
+    public void tearDown() {
+        zctx.stop();
+    }
+
+}
@@ -0,0 +1,63 @@
+package jmh.bench.context;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+
+import jmh.plot.Curve;
+import jmh.plot.Draw;
+
+/**
+ * Draw the throughput against the number of I/O threads, one curve for each context topology
+ * and one file for each allocator, message size and client threads count.
+ */
+public class Plotter implements jmh.plot.Plotter {
+
+    // run -> topology -> I/O threads -> result
+    private final Map<String, Map<String, Map<Integer, RunResult>>> resultsMap = new HashMap<>();
+
+    public Plotter() {
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        String run = params.getParam("allocator") + "-" + params.getParam("msgSize") + "-" + params.getThreads() + "t";
+        resultsMap.computeIfAbsent(run, k -> new TreeMap<>())
+                  .computeIfAbsent(params.getParam("topology"), k -> new TreeMap<>())
+                  .put(Integer.parseInt(params.getParam("ioThreads")), rr);
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        for (Map.Entry<String, Map<String, Map<Integer, RunResult>>> m: resultsMap.entrySet()) {
+            TreeSet<Integer> ioThreads = new TreeSet<>();
+            m.getValue().values().forEach(r -> ioThreads.addAll(r.keySet()));
+            String[] labels = ioThreads.stream().map(t -> t + " I/O").toArray(String[]::new);
+            Curve[] curves = new Curve[m.getValue().size()];
+            int rank = 0;
+            double max = Double.MIN_VALUE;
+            for (Map.Entry<String, Map<Integer, RunResult>> e: m.getValue().entrySet()) {
+                double[] values = new double[ioThreads.size()];
+                int i = 0;
+                for (Integer t: ioThreads) {
+                    RunResult rr = e.getValue().get(t);
+                    values[i] = rr != null ? rr.getPrimaryResult().getScore() : Double.NaN;
+                    if (rr != null) {
+                        max = Math.max(max, values[i]);
+                        System.out.format("%s %s %s %s%n", m.getKey(), e.getKey(), t, values[i]);
+                    }
+                    i++;
+                }
+                curves[rank++] = new Curve(e.getKey(), values);
+            }
+            svgName = svgName.replace(".svg", "");
+            Draw.lines(svgName + "-context-" + m.getKey() + ".svg", labels, max, Draw.interval(max), " msg/s", curves);
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package jmh.bench.context;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import jmh.perf.BenchmarkContext.StatefullSocket;
+
+@State(Scope.Thread)
+public class ThreadState {
+
+    StatefullSocket s;
+    // The number of messages sent by each invocation
+    int msgSend;
+
+    @Setup(Level.Trial)
+    public void newClientSocket(ContextState globalState, BenchmarkParams params) {
+        s = globalState.zctx.getSocketState();
+        msgSend = params.getOpsPerInvocation();
+    }
+
+    @TearDown
+    public void close(ContextState globalState) {
+        s.close();
+    }
+
+}
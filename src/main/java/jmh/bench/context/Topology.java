@@ -0,0 +1,29 @@
+package jmh.bench.context;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import jmh.bench.allocators.Push;
+import jmh.plot.PlottingClass;
+
+/**
+ * Push messages with each combination of I/O threads count and context topology.
+ * It should be run with many threads, as the topology only matters when there is many client sockets.
+ */
+@PlottingClass(plotter = Plotter.class)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Topology {
+
+    @Benchmark
+    @OperationsPerInvocation(Push.MSGSEND)
+    public void push(ContextState state, ThreadState threadState) throws Exception {
+        state.zctx.simpleSendMessages(threadState.s.getSocket(), state.msgSize, threadState.msgSend);
+    }
+
+}
@@ -0,0 +1,33 @@
+package jmh.bench.echo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import jmh.bench.allocators.Push;
+import jmh.plot.PlottingClass;
+
+/**
+ * Round trip throughput, with a server that echoes the query without copying it.
+ */
+@PlottingClass(plotter = Plotter.class)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Echo {
+
+    @Benchmark
+    public void queryAnswer(EchoState state, ThreadState threadState) throws Exception {
+        state.zctx.queryAnswerMessage(threadState.s.getSocket(), state.msgSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Push.MSGSEND)
+    public void queryAnswerBatch(EchoState state, ThreadState threadState) throws Exception {
+        state.zctx.queryAnswerMessages(threadState.s.getSocket(), state.msgSize, threadState.msgSend);
+    }
+
+}
@@ -0,0 +1,25 @@
+package jmh.bench.echo;
+
+import jmh.bench.latency.LatencyFactory;
+import zmq.Msg;
+import zmq.msg.MsgAllocator;
+
+/**
+ * A request/answer factory whose server sends back the received message, without any copy.
+ * The query is received in a buffer from the configured allocator, so the answer is too.
+ * 
+ * @author Fabrice Bacchella
+ *
+ */
+public class EchoFactory extends LatencyFactory {
+
+    EchoFactory(MsgAllocator na, String pattern) {
+        super(na, pattern, 0);
+    }
+
+    @Override
+    public Msg getAnswerMsg(Msg cmsg) {
+        return cmsg;
+    }
+
+}
@@ -0,0 +1,35 @@
+package jmh.bench.echo;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.allocators.Allocators;
+import jmh.perf.BenchmarkContext;
+
+@State(Scope.Benchmark)
+public class EchoState {
+
+    @Param({"1", "100", "10000", "100000"})
+    public int msgSize;
+    // A representative subset, the allocators are compared in jmh.bench.allocators, -P allocator=... runs any other
+    @Param({"nettyDirectReference", "nettyDirectRelease", "slab", "heap", "direct"})
+    public String allocator;
+    @Param({"reqrep", "dealerrouter"})
+    public String pattern;
+
+    BenchmarkContext zctx;
+
+    @Setup
+    public void setup() {
+        zctx = new BenchmarkContext(new EchoFactory(Allocators.resolve(allocator), pattern));
+    }
+
+    @TearDown
+    public void tearDown() {
+        zctx.stop();
+    }
+
+}
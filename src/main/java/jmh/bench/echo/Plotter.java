@@ -0,0 +1,56 @@
+package jmh.bench.echo;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.util.Statistics;
+
+import jmh.plot.BoxPlot;
+import jmh.plot.Draw;
+
+/**
+ * One plot for each benchmark, pattern and message size, comparing the allocators.
+ */
+public class Plotter implements jmh.plot.Plotter {
+
+    private final Map<String, Map<String, RunResult>> resultsMap = new HashMap<>();
+
+    public Plotter() {
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        String benchmark = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1);
+        String run = benchmark + "-" + params.getParam("pattern") + "-" + params.getParam("msgSize");
+        resultsMap.computeIfAbsent(run, k -> new TreeMap<>(jmh.bench.allocators.Plotter.nodeComparator)).put(params.getParam("allocator"), rr);
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        for (Map.Entry<String, Map<String, RunResult>> m: resultsMap.entrySet()) {
+            BoxPlot[] plots = new BoxPlot[m.getValue().size()];
+            int bpRank = 0;
+            double max = Double.MIN_VALUE;
+            for (Map.Entry<String, RunResult> e: m.getValue().entrySet()) {
+                Statistics stats = e.getValue().getPrimaryResult().getStatistics();
+                BoxPlot bp = new BoxPlot(e.getKey());
+                bp.q1 = stats.getPercentile(25);
+                bp.q2 = stats.getPercentile(50);
+                bp.q3 = stats.getPercentile(75);
+                bp.low = stats.getMin();
+                bp.high = stats.getMax();
+                bp.outliers = new double[]{};
+                System.out.format("%s %s %s %s %s %s %s %n", m.getKey(), e.getKey(), bp.low, bp.q1, bp.q2, bp.q3, bp.high);
+                plots[bpRank++] = bp;
+                max = Math.max(max, bp.high);
+            }
+            svgName = svgName.replace(".svg", "");
+            Draw.generate(svgName + "-echo-" + m.getKey() + ".svg", 0, max, Draw.interval(max), 1000.0/max, "", " op/s", plots);
+        }
+    }
+
+}
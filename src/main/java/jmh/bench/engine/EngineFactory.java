@@ -0,0 +1,41 @@
+package jmh.bench.engine;
+
+import jmh.bench.allocators.AllocatorFactory;
+import jmh.perf.ServerEngine;
+import zmq.msg.MsgAllocator;
+
+/**
+ * The PUSH/PULL allocator factory, with a chosen server engine, serving one or many sockets.
+ * 
+ * @author Fabrice Bacchella
+ *
+ */
+public class EngineFactory extends AllocatorFactory {
+
+    private final ServerEngine engine;
+    private final int burst;
+    private final int sockets;
+
+    EngineFactory(MsgAllocator na, ServerEngine engine, int burst, int sockets) {
+        super(na);
+        this.engine = engine;
+        this.burst = burst;
+        this.sockets = sockets;
+    }
+
+    @Override
+    public ServerEngine getServerEngine() {
+        return engine;
+    }
+
+    @Override
+    public int getServerBurst() {
+        return burst;
+    }
+
+    @Override
+    public int getServerSockets() {
+        return sockets;
+    }
+
+}
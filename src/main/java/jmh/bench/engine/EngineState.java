@@ -0,0 +1,41 @@
+package jmh.bench.engine;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.allocators.Allocators;
+import jmh.perf.BenchmarkContext;
+import jmh.perf.ServerEngine;
+
+@State(Scope.Benchmark)
+public class EngineState {
+
+    @Param({"1", "100", "10000"})
+    public int msgSize;
+    @Param({"nettyDirectRelease", "slab", "heap"})
+    public String allocator;
+    @Param({"BLOCKING", "POLL", "SPIN"})
+    public ServerEngine engine;
+    // The maximum number of messages processed on each wake up, not used by the blocking engine
+    @Param({"64"})
+    public int burst;
+    // The number of sockets bound by the server, the client spreads the messages over all of them
+    @Param({"1", "4"})
+    public int sockets;
+
+    BenchmarkContext zctx;
+
+    @Setup
+    public void setup() {
+        zctx = new BenchmarkContext(new EngineFactory(Allocators.resolve(allocator), engine, burst, sockets));
+    }
+
+    @TearDown
+    public void tearDown() {
+        zctx.stop();
+    }
+
+}
@@ -0,0 +1,33 @@
+package jmh.bench.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import jmh.plot.PlottingClass;
+
+/**
+ * The PUSH/PULL benchmarks of {@link jmh.bench.allocators.Push}, with each server engine.
+ * The CPU cost of the server is given by the profiler {@link jmh.perf.ServerCpuProfiler}.
+ */
+@PlottingClass(plotter = Plotter.class)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Push {
+
+    @Benchmark
+    public void fireAndForget(EngineState state, ThreadState threadState) throws Exception {
+        state.zctx.simpleSendMessage(threadState.s.getSocket(), state.msgSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(jmh.bench.allocators.Push.MSGSEND)
+    public void fireAndForgetBatch(EngineState state, ThreadState threadState) throws Exception {
+        state.zctx.simpleSendMessages(threadState.s.getSocket(), state.msgSize, threadState.msgSend);
+    }
+
+}
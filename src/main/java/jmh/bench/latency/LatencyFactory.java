@@ -0,0 +1,133 @@
+package jmh.bench.latency;
+
+import jmh.allocators.Allocators;
+import jmh.perf.BenchmarkContext;
+import jmh.perf.Transport;
+import jmh.perf.ZMQFactory;
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+import zmq.msg.MsgAllocator;
+
+/**
+ * A request/answer factory, using either REQ/REP or DEALER/ROUTER. The answer has the same size than the query.<p>
+ * With server workers, the proxy uses a ROUTER frontend and a DEALER backend. The workers use REP sockets, or DEALER
+ * sockets that get the routing identity as the first frame, so they can still use {@link BenchmarkContext#routeMessage(SocketBase)}.
+ * 
+ * @author Fabrice Bacchella
+ *
+ */
+public class LatencyFactory implements ZMQFactory {
+
+    private final MsgAllocator na;
+    private final boolean routed;
+    private final String url = Transport.TCP.getEndpoint();
+    private final int workers;
+
+    LatencyFactory(MsgAllocator na, String pattern) {
+        this(na, pattern, 0);
+    }
+
+    /**
+     * @param na the allocator used by the sockets and for the messages
+     * @param pattern reqrep or dealerrouter
+     * @param workers the number of server workers, 0 for a single server without a proxy
+     */
+    public LatencyFactory(MsgAllocator na, String pattern, int workers) {
+        this.na = na;
+        this.workers = workers;
+        switch (pattern) {
+        case "reqrep":
+            routed = false;
+            break;
+        case "dealerrouter":
+            routed = true;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown pattern " + pattern);
+        }
+    }
+
+    @Override
+    public Ctx getContext() {
+        return ZMQ.init(1);
+    }
+
+    @Override
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public SocketBase getClientSocket(Ctx ctx) {
+        SocketBase s = ZMQ.socket(ctx, routed ? ZMQ.ZMQ_DEALER : ZMQ.ZMQ_REQ);
+        s.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        return s;
+    }
+
+    @Override
+    public SocketBase getServerSocket(Ctx ctx) {
+        int type;
+        if (! routed) {
+            type = ZMQ.ZMQ_REP;
+        } else if (workers > 0) {
+            type = ZMQ.ZMQ_DEALER;
+        } else {
+            type = ZMQ.ZMQ_ROUTER;
+        }
+        SocketBase serverSocket = ZMQ.socket(ctx, type);
+        serverSocket.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        return serverSocket;
+    }
+
+    @Override
+    public int getServerWorkers() {
+        return workers;
+    }
+
+    @Override
+    public SocketBase getFrontendSocket(Ctx ctx) {
+        SocketBase frontend = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        frontend.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        return frontend;
+    }
+
+    @Override
+    public SocketBase getBackendSocket(Ctx ctx) {
+        SocketBase backend = ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+        backend.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        return backend;
+    }
+
+    @Override
+    public Msg getQueryMsg(int msgSize) {
+        return na.allocate(msgSize);
+    }
+
+    @Override
+    public Msg getAnswerMsg(Msg cmsg) {
+        return na.allocate(cmsg.size());
+    }
+
+    @Override
+    public void releaseMsg(Msg msg) {
+        Allocators.release(na, msg);
+    }
+
+    @Override
+    public boolean withServer() {
+        return true;
+    }
+
+    @Override
+    public boolean waitAnswser() {
+        return true;
+    }
+
+    @Override
+    public ServerProcessing getServerProcessing(BenchmarkContext ctx) {
+        return routed ? ctx::routeMessage : ctx::processMessage;
+    }
+
+}
@@ -0,0 +1,26 @@
+package jmh.bench.latency;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import jmh.plot.PlottingClass;
+
+/**
+ * Messages are sent at a fixed rate, each one stamped with it's intended send time. The latency, measured by the server
+ * when it consumes the message, is reported as the secondary results openLoop.pXX by the {@link jmh.perf.LatencyProfiler}.
+ */
+@PlottingClass(plotter = OpenLoopPlotter.class)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OpenLoop {
+
+    @Benchmark
+    public void pacedPush(OpenLoopState state, OpenLoopThreadState threadState) throws Exception {
+        state.zctx.pacedSendMessage(threadState.s.getSocket(), state.msgSize, threadState.pacer);
+    }
+
+}
@@ -0,0 +1,67 @@
+package jmh.bench.latency;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+import jmh.plot.Curve;
+import jmh.plot.Draw;
+
+/**
+ * Draw the latency against the offered rate, with a p50 and a p99 curve for each allocator and one file for each message size.
+ */
+public class OpenLoopPlotter implements jmh.plot.Plotter {
+
+    private static final String[] PERCENTILES = new String[] {"p50", "p99"};
+
+    // msgSize -> allocator -> rate -> result
+    private final Map<String, Map<String, Map<Integer, RunResult>>> resultsMap = new HashMap<>();
+
+    public OpenLoopPlotter() {
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        resultsMap.computeIfAbsent(params.getParam("msgSize"), k -> new TreeMap<>(jmh.bench.allocators.Plotter.nodeComparator))
+                  .computeIfAbsent(params.getParam("allocator"), k -> new TreeMap<>())
+                  .put(Integer.parseInt(params.getParam("rate")), rr);
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        for (Map.Entry<String, Map<String, Map<Integer, RunResult>>> m: resultsMap.entrySet()) {
+            TreeSet<Integer> rates = new TreeSet<>();
+            m.getValue().values().forEach(r -> rates.addAll(r.keySet()));
+            String[] labels = rates.stream().map(r -> r + " msg/s").toArray(String[]::new);
+            Curve[] curves = new Curve[m.getValue().size() * PERCENTILES.length];
+            int rank = 0;
+            double max = Double.MIN_VALUE;
+            for (Map.Entry<String, Map<Integer, RunResult>> e: m.getValue().entrySet()) {
+                for (String percentile: PERCENTILES) {
+                    double[] values = new double[rates.size()];
+                    int i = 0;
+                    for (Integer rate: rates) {
+                        RunResult rr = e.getValue().get(rate);
+                        Result<?> r = rr != null ? rr.getSecondaryResults().get(OpenLoopState.LATENCY + "." + percentile) : null;
+                        values[i] = r != null ? r.getScore() : Double.NaN;
+                        if (r != null) {
+                            max = Math.max(max, values[i]);
+                            System.out.format("%s %s %s %s %s %s%n", m.getKey(), e.getKey(), rate, rr.getPrimaryResult().getScore(), percentile, values[i]);
+                        }
+                        i++;
+                    }
+                    curves[rank++] = new Curve(e.getKey() + " " + percentile, values);
+                }
+            }
+            svgName = svgName.replace(".svg", "");
+            Draw.lines(svgName + "-openloop-" + m.getKey() + ".svg", labels, max, Draw.interval(max), " us", curves);
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package jmh.bench.latency;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.allocators.Allocators;
+import jmh.bench.allocators.AllocatorFactory;
+import jmh.perf.BenchmarkContext;
+import jmh.perf.LatencyHistogram;
+
+@State(Scope.Benchmark)
+public class OpenLoopState {
+
+    public static final String LATENCY = "openLoop";
+
+    @Param({"100", "10000", "100000"})
+    public int msgSize;
+    @Param({"nettyDirectReference", "nettyDirectRelease", "slab", "heap", "direct"})
+    public String allocator;
+    // Target rate, in messages per second and per thread
+    @Param({"1000", "10000", "50000", "100000", "200000"})
+    public int rate;
+
+    BenchmarkContext zctx;
+
+    @Setup
+    public void setup() {
+        zctx = new BenchmarkContext(new AllocatorFactory(Allocators.resolve(allocator), LatencyHistogram.get(LATENCY)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        zctx.stop();
+    }
+
+}
@@ -0,0 +1,37 @@
+package jmh.bench.latency;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.perf.BenchmarkContext.StatefullSocket;
+import jmh.perf.Pacer;
+
+@State(Scope.Thread)
+public class OpenLoopThreadState {
+
+    StatefullSocket s;
+    Pacer pacer;
+
+    @Setup(Level.Trial)
+    public void newClientSocket(OpenLoopState globalState) {
+        s = globalState.zctx.getSocketState();
+        pacer = new Pacer(globalState.rate);
+    }
+
+    /**
+     * Each iteration starts a new schedule, so the backlog of a saturated iteration is not carried over
+     */
+    @Setup(Level.Iteration)
+    public void restart() {
+        pacer.reset();
+    }
+
+    @TearDown
+    public void close(OpenLoopState globalState) {
+        s.close();
+    }
+
+}
@@ -0,0 +1,62 @@
+package jmh.bench.latency;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.util.Statistics;
+
+import jmh.plot.Curve;
+import jmh.plot.Draw;
+
+/**
+ * Draw the percentile spectrum of the sampled latencies, one curve for each allocator
+ * and one file for each pattern and message size.
+ */
+public class Plotter implements jmh.plot.Plotter {
+
+    static final double[] PERCENTILES = new double[] {50, 90, 99, 99.9, 99.99};
+
+    private final Map<String, Map<String, RunResult>> resultsMap = new HashMap<>();
+
+    public Plotter() {
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        String allocator = params.getParam("allocator");
+        String run = params.getParam("pattern") + "-" + params.getParam("msgSize");
+        resultsMap.computeIfAbsent(run, k -> new TreeMap<>(jmh.bench.allocators.Plotter.nodeComparator)).put(allocator, rr);
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        String[] labels = new String[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            labels[i] = "p" + PERCENTILES[i];
+        }
+        for (Map.Entry<String, Map<String, RunResult>> m: resultsMap.entrySet()) {
+            Curve[] curves = new Curve[m.getValue().size()];
+            int rank = 0;
+            double max = Double.MIN_VALUE;
+            String unit = "";
+            for (Map.Entry<String, RunResult> e: m.getValue().entrySet()) {
+                Statistics stats = e.getValue().getPrimaryResult().getStatistics();
+                unit = e.getValue().getPrimaryResult().getScoreUnit();
+                double[] values = new double[PERCENTILES.length];
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    values[i] = stats.getPercentile(PERCENTILES[i]);
+                    max = Math.max(max, values[i]);
+                }
+                System.out.format("%s %s %s %s %s %s %s %n", m.getKey(), e.getKey(), values[0], values[1], values[2], values[3], values[4]);
+                curves[rank++] = new Curve(e.getKey(), values);
+            }
+            svgName = svgName.replace(".svg", "");
+            Draw.lines(svgName + "-" + m.getKey() + ".svg", labels, max, Draw.interval(max), " " + unit.replace("/op", ""), curves);
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package jmh.bench.latency;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import jmh.plot.PlottingClass;
+
+@PlottingClass(plotter = Plotter.class)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoundTrip {
+
+    @Benchmark
+    public void queryAnswer(LatencyState state, ThreadState threadState) throws Exception {
+        state.zctx.queryAnswerMessage(threadState.s.getSocket(), state.msgSize);
+    }
+
+}
@@ -0,0 +1,31 @@
+package jmh.bench.multipart;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import jmh.plot.PlottingClass;
+
+/**
+ * Send the same records, either as one frame for each record or coalesced in a single frame.
+ * Scores are in messages per second, the plotter converts them in records per second.
+ */
+@PlottingClass(plotter = Plotter.class)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Multipart {
+
+    @Benchmark
+    public void frames(MultipartState state, ThreadState threadState) throws Exception {
+        state.zctx.multipartSendMessage(threadState.s.getSocket(), state.records, state.recordSize);
+    }
+
+    @Benchmark
+    public void coalesced(MultipartState state, ThreadState threadState) throws Exception {
+        state.zctx.simpleSendMessage(threadState.s.getSocket(), state.records * state.recordSize);
+    }
+
+}
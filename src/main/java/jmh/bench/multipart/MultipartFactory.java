@@ -0,0 +1,24 @@
+package jmh.bench.multipart;
+
+import jmh.bench.allocators.AllocatorFactory;
+import jmh.perf.BenchmarkContext;
+import zmq.msg.MsgAllocator;
+
+/**
+ * The PUSH/PULL allocator factory, but the server consumes whole multipart messages.
+ * 
+ * @author Fabrice Bacchella
+ *
+ */
+public class MultipartFactory extends AllocatorFactory {
+
+    MultipartFactory(MsgAllocator na) {
+        super(na);
+    }
+
+    @Override
+    public ServerProcessing getServerProcessing(BenchmarkContext ctx) {
+        return ctx::consumeMultipart;
+    }
+
+}
@@ -0,0 +1,35 @@
+package jmh.bench.multipart;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.allocators.Allocators;
+import jmh.perf.BenchmarkContext;
+
+@State(Scope.Benchmark)
+public class MultipartState {
+
+    // The number of logical records in each message
+    @Param({"1", "10", "100"})
+    public int records;
+    @Param({"10", "100", "1000", "10000"})
+    public int recordSize;
+    @Param({"nettyDirectRelease", "slab", "heap", "direct"})
+    public String allocator;
+
+    BenchmarkContext zctx;
+
+    @Setup
+    public void setup() {
+        zctx = new BenchmarkContext(new MultipartFactory(Allocators.resolve(allocator)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        zctx.stop();
+    }
+
+}
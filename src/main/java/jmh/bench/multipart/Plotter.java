@@ -0,0 +1,62 @@
+package jmh.bench.multipart;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.util.Statistics;
+
+import jmh.plot.BoxPlot;
+import jmh.plot.Draw;
+
+/**
+ * One plot for each records count and record size, comparing the framing for each allocator, in records per second.
+ */
+public class Plotter implements jmh.plot.Plotter {
+
+    private final Map<String, Map<String, RunResult>> resultsMap = new HashMap<>();
+
+    public Plotter() {
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        String benchmark = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1);
+        String run = params.getParam("records") + "x" + params.getParam("recordSize");
+        resultsMap.computeIfAbsent(run, k -> new TreeMap<>(jmh.bench.allocators.Plotter.nodeComparator)).put(params.getParam("allocator") + " " + benchmark, rr);
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        for (Map.Entry<String, Map<String, RunResult>> m: resultsMap.entrySet()) {
+            BoxPlot[] plots = new BoxPlot[m.getValue().size()];
+            int bpRank = 0;
+            double max = Double.MIN_VALUE;
+            for (Map.Entry<String, RunResult> e: m.getValue().entrySet()) {
+                BoxPlot bp = makeBoxPlot(e.getKey(), e.getValue());
+                System.out.format("%s %s %s %s %s %s %s %n", m.getKey(), e.getKey(), bp.low, bp.q1, bp.q2, bp.q3, bp.high);
+                plots[bpRank++] = bp;
+                max = Math.max(max, bp.high);
+            }
+            svgName = svgName.replace(".svg", "");
+            Draw.generate(svgName + "-multipart-" + m.getKey() + ".svg", 0, max, Draw.interval(max), 1000.0/max, "", " rec/s", plots);
+        }
+    }
+
+    private BoxPlot makeBoxPlot(String name, RunResult rr) {
+        Statistics stats = rr.getPrimaryResult().getStatistics();
+        int records = Integer.parseInt(rr.getParams().getParam("records"));
+        BoxPlot bp = new BoxPlot(name);
+        bp.q1 = stats.getPercentile(25) * records;
+        bp.q2 = stats.getPercentile(50) * records;
+        bp.q3 = stats.getPercentile(75) * records;
+        bp.low = stats.getMin() * records;
+        bp.high = stats.getMax() * records;
+        bp.outliers = new double[]{};
+        return bp;
+    }
+
+}
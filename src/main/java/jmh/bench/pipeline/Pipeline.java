@@ -0,0 +1,30 @@
+package jmh.bench.pipeline;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import jmh.bench.allocators.Push;
+import jmh.plot.PlottingClass;
+
+/**
+ * Push messages through a pipeline of stages. The score is the ventilators throughput, the throughput at the sink
+ * is the secondary result {@value PipelineFactory#SINK} and the end-to-end latency percentiles are the secondary results
+ * {@value PipelineFactory#LATENCY}.p*
+ */
+@PlottingClass(plotter = Plotter.class)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Pipeline {
+
+    @Benchmark
+    @OperationsPerInvocation(Push.MSGSEND)
+    public void ventilate(PipelineState state, ThreadState threadState) throws Exception {
+        state.zctx.simpleSendMessages(threadState.s.getSocket(), state.msgSize, threadState.msgSend);
+    }
+
+}
@@ -0,0 +1,144 @@
+package jmh.bench.pipeline;
+
+import jmh.allocators.Allocators;
+import jmh.perf.BenchmarkContext;
+import jmh.perf.EventCounter;
+import jmh.perf.LatencyHistogram;
+import jmh.perf.Transport;
+import jmh.perf.ZMQFactory;
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+import zmq.msg.MsgAllocator;
+
+/**
+ * A PUSH/PULL pipeline, the clients are the ventilators, and the server is the sink.<p>
+ * Each message starts with the time it was generated, so the sink measures the end-to-end latency.
+ * Each stage either forwards the received message as is, or copies it in a new message from the allocator.
+ * 
+ * @author Fabrice Bacchella
+ *
+ */
+public class PipelineFactory implements ZMQFactory {
+
+    public static final String SINK = "pipeline.sink";
+    public static final String LATENCY = "pipeline";
+
+    private final MsgAllocator na;
+    private final int stages;
+    private final int workers;
+    private final boolean copy;
+    private final Transport transport;
+    private final String url;
+    private final EventCounter received = EventCounter.get(SINK);
+    private final LatencyHistogram latency = LatencyHistogram.get(LATENCY);
+
+    /**
+     * @param na the allocator used by the sockets and for the messages
+     * @param stages the number of stages
+     * @param workers the number of workers in each stage
+     * @param copy if true, each stage copies the message
+     * @param transport the transport between the stages
+     */
+    PipelineFactory(MsgAllocator na, int stages, int workers, boolean copy, Transport transport) {
+        this.na = na;
+        this.stages = stages;
+        this.workers = workers;
+        this.copy = copy;
+        this.transport = transport;
+        this.url = transport.getEndpoint();
+    }
+
+    @Override
+    public Ctx getContext() {
+        return ZMQ.init(1);
+    }
+
+    @Override
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public String getBackendUrl() {
+        return transport.getEndpoint();
+    }
+
+    @Override
+    public int getPipelineStages() {
+        return stages;
+    }
+
+    @Override
+    public int getPipelineWorkers() {
+        return workers;
+    }
+
+    @Override
+    public SocketBase getClientSocket(Ctx ctx) {
+        return getStageOutputSocket(ctx);
+    }
+
+    @Override
+    public SocketBase getStageOutputSocket(Ctx ctx) {
+        SocketBase s = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        s.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        return s;
+    }
+
+    @Override
+    public SocketBase getServerSocket(Ctx ctx) {
+        SocketBase serverSocket = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        serverSocket.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        return serverSocket;
+    }
+
+    @Override
+    public Msg getQueryMsg(int msgSize) {
+        return BenchmarkContext.stamp(na.allocate(Math.max(msgSize, Long.BYTES)));
+    }
+
+    @Override
+    public LatencyHistogram getInFlightHistogram() {
+        return latency;
+    }
+
+    /**
+     * The message sent to the next stage
+     */
+    @Override
+    public Msg getAnswerMsg(Msg cmsg) {
+        if (copy) {
+            Msg smsg = na.allocate(cmsg.size());
+            smsg.put(cmsg.buf(), 0, cmsg.size());
+            return smsg;
+        } else {
+            return cmsg;
+        }
+    }
+
+    @Override
+    public void releaseMsg(Msg msg) {
+        Allocators.release(na, msg);
+    }
+
+    @Override
+    public boolean withServer() {
+        return true;
+    }
+
+    @Override
+    public boolean waitAnswser() {
+        return false;
+    }
+
+    @Override
+    public ServerProcessing getServerProcessing(BenchmarkContext ctx) {
+        return s -> {
+            ctx.consume(s);
+            received.increment();
+        };
+    }
+
+}
@@ -0,0 +1,55 @@
+package jmh.bench.pipeline;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.allocators.Allocators;
+import jmh.perf.BenchmarkContext;
+import jmh.perf.Transport;
+
+@State(Scope.Benchmark)
+public class PipelineState {
+
+    // At least the size of the time stamp
+    @Param({"100", "10000", "1000000"})
+    public int msgSize;
+    @Param({"nettyDirectReference", "nettyDirectRelease", "slab", "heap"})
+    public String allocator;
+    @Param({"1", "2", "4"})
+    public int stages;
+    // The workers in each stage
+    @Param({"1", "2", "4"})
+    public int workers;
+    // zerocopy forwards the received message, copy sends a new one
+    @Param({"zerocopy", "copy"})
+    public String forward;
+    @Param({"INPROC", "TCP"})
+    public Transport transport;
+
+    BenchmarkContext zctx;
+
+    @Setup
+    public void setup() {
+        boolean copy;
+        switch (forward) {
+        case "zerocopy":
+            copy = false;
+            break;
+        case "copy":
+            copy = true;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown forward " + forward);
+        }
+        zctx = new BenchmarkContext(new PipelineFactory(Allocators.resolve(allocator), stages, workers, copy, transport));
+    }
+
+    @TearDown
+    public void tearDown() {
+        zctx.stop();
+    }
+
+}
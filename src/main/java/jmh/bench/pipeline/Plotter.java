@@ -0,0 +1,70 @@
+package jmh.bench.pipeline;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+import jmh.plot.Curve;
+import jmh.plot.Draw;
+
+/**
+ * Draw the sink throughput and the end-to-end p99 latency against the number of stages, one curve for each allocator and forwarding.
+ * There is one file for each message size, workers count and transport.
+ */
+public class Plotter implements jmh.plot.Plotter {
+
+    // run -> allocator and forward -> stages -> result
+    private final Map<String, Map<String, Map<Integer, RunResult>>> resultsMap = new HashMap<>();
+
+    public Plotter() {
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        String run = params.getParam("msgSize") + "-" + params.getParam("workers") + "-" + params.getParam("transport");
+        resultsMap.computeIfAbsent(run, k -> new TreeMap<>(jmh.bench.allocators.Plotter.nodeComparator))
+                  .computeIfAbsent(params.getParam("allocator") + " " + params.getParam("forward"), k -> new TreeMap<>())
+                  .put(Integer.parseInt(params.getParam("stages")), rr);
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        svgName = svgName.replace(".svg", "");
+        for (Map.Entry<String, Map<String, Map<Integer, RunResult>>> m: resultsMap.entrySet()) {
+            TreeSet<Integer> stages = new TreeSet<>();
+            m.getValue().values().forEach(r -> stages.addAll(r.keySet()));
+            String[] labels = stages.stream().map(s -> s + " stages").toArray(String[]::new);
+            draw(svgName + "-pipeline-throughput-" + m.getKey() + ".svg", m.getKey(), labels, stages, m.getValue(), PipelineFactory.SINK, " msg/s");
+            draw(svgName + "-pipeline-p99-" + m.getKey() + ".svg", m.getKey(), labels, stages, m.getValue(), PipelineFactory.LATENCY + ".p99", " us");
+        }
+    }
+
+    private void draw(String fileName, String runName, String[] labels, TreeSet<Integer> stages, Map<String, Map<Integer, RunResult>> results, String resultName, String unit) throws IOException {
+        Curve[] curves = new Curve[results.size()];
+        int rank = 0;
+        double max = Double.MIN_VALUE;
+        for (Map.Entry<String, Map<Integer, RunResult>> e: results.entrySet()) {
+            double[] values = new double[stages.size()];
+            int i = 0;
+            for (Integer s: stages) {
+                RunResult rr = e.getValue().get(s);
+                Result<?> r = rr != null ? rr.getSecondaryResults().get(resultName) : null;
+                values[i] = r != null ? r.getScore() : Double.NaN;
+                if (r != null) {
+                    max = Math.max(max, values[i]);
+                    System.out.format("%s %s %s %s %s%n", runName, resultName, e.getKey(), s, values[i]);
+                }
+                i++;
+            }
+            curves[rank++] = new Curve(e.getKey(), values);
+        }
+        Draw.lines(fileName, labels, max, Draw.interval(max), unit, curves);
+    }
+
+}
@@ -0,0 +1,81 @@
+package jmh.bench.pubsub;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+import jmh.plot.Curve;
+import jmh.plot.Draw;
+
+/**
+ * Draw the throughput against the number of subscribers, one curve for each allocator.
+ * For each benchmark, message size, topics, selectivity and backend, one file gives the messages delivered
+ * to each subscriber and one the messages sent by the publishers.
+ */
+public class Plotter implements jmh.plot.Plotter {
+
+    // run -> allocator -> subscribers -> result
+    private final Map<String, Map<String, Map<Integer, RunResult>>> resultsMap = new HashMap<>();
+
+    public Plotter() {
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        String benchmark = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1);
+        String run = benchmark + "-" + params.getParam("msgSize") + "-" + params.getParam("topics") + "-" + params.getParam("selectivity") + "-" + params.getParam("backend");
+        resultsMap.computeIfAbsent(run, k -> new TreeMap<>(jmh.bench.allocators.Plotter.nodeComparator))
+                  .computeIfAbsent(params.getParam("allocator"), k -> new TreeMap<>())
+                  .put(Integer.parseInt(params.getParam("subscribers")), rr);
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        svgName = svgName.replace(".svg", "");
+        for (Map.Entry<String, Map<String, Map<Integer, RunResult>>> m: resultsMap.entrySet()) {
+            TreeSet<Integer> subscribers = new TreeSet<>();
+            m.getValue().values().forEach(r -> subscribers.addAll(r.keySet()));
+            String[] labels = subscribers.stream().map(s -> s + " subscribers").toArray(String[]::new);
+            draw(svgName + "-pubsub-delivered-" + m.getKey() + ".svg", m.getKey(), labels, subscribers, m.getValue(), true);
+            draw(svgName + "-pubsub-sent-" + m.getKey() + ".svg", m.getKey(), labels, subscribers, m.getValue(), false);
+        }
+    }
+
+    private void draw(String fileName, String runName, String[] labels, TreeSet<Integer> subscribers, Map<String, Map<Integer, RunResult>> results, boolean delivered) throws IOException {
+        Curve[] curves = new Curve[results.size()];
+        int rank = 0;
+        double max = Double.MIN_VALUE;
+        for (Map.Entry<String, Map<Integer, RunResult>> e: results.entrySet()) {
+            double[] values = new double[subscribers.size()];
+            int i = 0;
+            for (Integer s: subscribers) {
+                values[i] = score(e.getValue().get(s), s, delivered);
+                if (! Double.isNaN(values[i])) {
+                    max = Math.max(max, values[i]);
+                    System.out.format("%s %s %s %s %s%n", runName, delivered ? "delivered" : "sent", e.getKey(), s, values[i]);
+                }
+                i++;
+            }
+            curves[rank++] = new Curve(e.getKey(), values);
+        }
+        Draw.lines(fileName, labels, max, Draw.interval(max), " msg/s", curves);
+    }
+
+    private double score(RunResult rr, int subscribers, boolean delivered) {
+        if (rr == null) {
+            return Double.NaN;
+        } else if (delivered) {
+            Result<?> r = rr.getSecondaryResults().get(PubSubFactory.DELIVERED);
+            return r != null ? r.getScore() / subscribers : Double.NaN;
+        } else {
+            return rr.getPrimaryResult().getScore();
+        }
+    }
+
+}
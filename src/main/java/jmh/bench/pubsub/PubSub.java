@@ -0,0 +1,34 @@
+package jmh.bench.pubsub;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import jmh.bench.allocators.Push;
+import jmh.plot.PlottingClass;
+
+/**
+ * Publish to many subscribers. The score is the publishers send throughput, as a publisher drops messages
+ * instead of blocking. The messages delivered to all the subscribers are the secondary result {@value PubSubFactory#DELIVERED}.
+ */
+@PlottingClass(plotter = Plotter.class)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PubSub {
+
+    @Benchmark
+    public void publish(PubSubState state, ThreadState threadState) throws Exception {
+        state.zctx.simpleSendMessage(threadState.s.getSocket(), state.msgSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Push.MSGSEND)
+    public void publishBatch(PubSubState state, ThreadState threadState) throws Exception {
+        state.zctx.simpleSendMessages(threadState.s.getSocket(), state.msgSize, threadState.msgSend);
+    }
+
+}
@@ -0,0 +1,149 @@
+package jmh.bench.pubsub;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jmh.allocators.Allocators;
+import jmh.perf.BenchmarkContext;
+import jmh.perf.EventCounter;
+import jmh.perf.Transport;
+import jmh.perf.ZMQFactory;
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+import zmq.msg.MsgAllocator;
+
+/**
+ * A fan-out factory, the clients are publishers connected to a XSUB/XPUB proxy and each server worker is a subscriber.<p>
+ * Each message starts with a topic, chosen randomly. Each subscriber subscribes to a share of the topics, given by the selectivity.
+ * With an inproc backend, the same message is given to every subscriber, so it's never explicitly released.
+ * With a TCP backend, the proxy encodes the same buffer for each subscriber, that decode it's own copy.
+ * 
+ * @author Fabrice Bacchella
+ *
+ */
+public class PubSubFactory implements ZMQFactory {
+
+    public static final String DELIVERED = "pubsub.delivered";
+
+    private final MsgAllocator na;
+    private final byte[][] topics;
+    private final int subscribedTopics;
+    private final int subscribers;
+    private final Transport backend;
+    private final String url = Transport.TCP.getEndpoint();
+    private final AtomicInteger subscriberRank = new AtomicInteger();
+    private final EventCounter delivered = EventCounter.get(DELIVERED);
+
+    /**
+     * @param na the allocator used by the sockets and for the messages
+     * @param subscribers the number of subscribers
+     * @param topics the number of topics
+     * @param selectivity the share of the topics each subscriber subscribes to
+     * @param backend the transport between the proxy and the subscribers
+     */
+    PubSubFactory(MsgAllocator na, int subscribers, int topics, double selectivity, Transport backend) {
+        this.na = na;
+        this.subscribers = subscribers;
+        this.backend = backend;
+        this.topics = new byte[topics][];
+        for (int i = 0; i < topics; i++) {
+            // Fixed width, so no topic is a prefix of another one
+            this.topics[i] = String.format("%04d", i).getBytes(StandardCharsets.US_ASCII);
+        }
+        this.subscribedTopics = Math.max(1, (int) Math.round(topics * selectivity));
+    }
+
+    @Override
+    public Ctx getContext() {
+        return ZMQ.init(1);
+    }
+
+    @Override
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public String getBackendUrl() {
+        return backend.getEndpoint();
+    }
+
+    @Override
+    public int getServerWorkers() {
+        return subscribers;
+    }
+
+    @Override
+    public SocketBase getClientSocket(Ctx ctx) {
+        SocketBase s = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        s.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        return s;
+    }
+
+    @Override
+    public SocketBase getFrontendSocket(Ctx ctx) {
+        SocketBase frontend = ZMQ.socket(ctx, ZMQ.ZMQ_XSUB);
+        frontend.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        return frontend;
+    }
+
+    @Override
+    public SocketBase getBackendSocket(Ctx ctx) {
+        SocketBase backendSocket = ZMQ.socket(ctx, ZMQ.ZMQ_XPUB);
+        backendSocket.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        return backendSocket;
+    }
+
+    @Override
+    public SocketBase getServerSocket(Ctx ctx) {
+        SocketBase subscriber = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+        subscriber.setSocketOpt(zmq.ZMQ.ZMQ_MSG_ALLOCATOR, na);
+        // Consecutive subscribers subscribe to shifted topics
+        int rank = subscriberRank.getAndIncrement();
+        for (int i = 0; i < subscribedTopics; i++) {
+            subscriber.setSocketOpt(ZMQ.ZMQ_SUBSCRIBE, topics[(rank + i) % topics.length]);
+        }
+        return subscriber;
+    }
+
+    @Override
+    public Msg getQueryMsg(int msgSize) {
+        Msg msg = na.allocate(msgSize);
+        msg.put(topics[ThreadLocalRandom.current().nextInt(topics.length)]);
+        return msg;
+    }
+
+    @Override
+    public Msg getAnswerMsg(Msg cmsg) {
+        return null;
+    }
+
+    @Override
+    public void releaseMsg(Msg msg) {
+        if (backend != Transport.INPROC) {
+            Allocators.release(na, msg);
+        }
+    }
+
+    @Override
+    public boolean withServer() {
+        return true;
+    }
+
+    @Override
+    public boolean waitAnswser() {
+        return false;
+    }
+
+    @Override
+    public ServerProcessing getServerProcessing(BenchmarkContext ctx) {
+        return s -> {
+            ctx.consume(s);
+            delivered.increment();
+        };
+    }
+
+}
@@ -0,0 +1,44 @@
+package jmh.bench.pubsub;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.allocators.Allocators;
+import jmh.perf.BenchmarkContext;
+import jmh.perf.Transport;
+
+@State(Scope.Benchmark)
+public class PubSubState {
+
+    // At least the size of a topic
+    @Param({"100", "10000"})
+    public int msgSize;
+    @Param({"nettyDirectReference", "nettyDirectRelease", "slab", "heap"})
+    public String allocator;
+    @Param({"1", "4", "16"})
+    public int subscribers;
+    @Param({"1", "10", "100"})
+    public int topics;
+    // The share of the topics each subscriber subscribes to
+    @Param({"1.0", "0.1"})
+    public double selectivity;
+    // The transport between the proxy and the subscribers
+    @Param({"INPROC", "TCP"})
+    public Transport backend;
+
+    BenchmarkContext zctx;
+
+    @Setup
+    public void setup() {
+        zctx = new BenchmarkContext(new PubSubFactory(Allocators.resolve(allocator), subscribers, topics, selectivity, backend));
+    }
+
+    @TearDown
+    public void tearDown() {
+        zctx.stop();
+    }
+
+}
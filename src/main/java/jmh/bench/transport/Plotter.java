@@ -0,0 +1,58 @@
+package jmh.bench.transport;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+
+import jmh.plot.Curve;
+import jmh.plot.Draw;
+
+/**
+ * Draw the throughput for each transport, one curve for each allocator
+ * and one file for each benchmark and message size.
+ */
+public class Plotter implements jmh.plot.Plotter {
+
+    // run -> allocator -> transport -> result
+    private final Map<String, Map<String, Map<String, RunResult>>> resultsMap = new HashMap<>();
+
+    public Plotter() {
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        String benchmark = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1);
+        resultsMap.computeIfAbsent(benchmark + "-" + params.getParam("msgSize"), k -> new TreeMap<>(jmh.bench.allocators.Plotter.nodeComparator))
+                  .computeIfAbsent(params.getParam("allocator"), k -> new HashMap<>())
+                  .put(params.getParam("transport"), rr);
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        String[] labels = new String[] {"INPROC", "IPC", "TCP"};
+        for (Map.Entry<String, Map<String, Map<String, RunResult>>> m: resultsMap.entrySet()) {
+            Curve[] curves = new Curve[m.getValue().size()];
+            int rank = 0;
+            double max = Double.MIN_VALUE;
+            for (Map.Entry<String, Map<String, RunResult>> e: m.getValue().entrySet()) {
+                double[] values = new double[labels.length];
+                for (int i = 0; i < labels.length; i++) {
+                    RunResult rr = e.getValue().get(labels[i]);
+                    values[i] = rr != null ? rr.getPrimaryResult().getScore() : Double.NaN;
+                    if (rr != null) {
+                        max = Math.max(max, values[i]);
+                        System.out.format("%s %s %s %s%n", m.getKey(), e.getKey(), labels[i], values[i]);
+                    }
+                }
+                curves[rank++] = new Curve(e.getKey(), values);
+            }
+            svgName = svgName.replace(".svg", "");
+            Draw.lines(svgName + "-transport-" + m.getKey() + ".svg", labels, max, Draw.interval(max), " op/s", curves);
+        }
+    }
+
+}
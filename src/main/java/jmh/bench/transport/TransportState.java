@@ -0,0 +1,38 @@
+package jmh.bench.transport;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.allocators.Allocators;
+import jmh.bench.allocators.AllocatorFactory;
+import jmh.perf.BenchmarkContext;
+import jmh.perf.ContextTopology;
+import jmh.perf.Transport;
+
+@State(Scope.Benchmark)
+public class TransportState {
+
+    @Param({"0", "1", "100", "10000", "100000", "10000000"})
+    public int msgSize;
+    // A representative subset, the allocators are compared in jmh.bench.allocators, -P allocator=... runs any other
+    @Param({"nettyDirectReference", "nettyDirectRelease", "heap", "direct"})
+    public String allocator;
+    @Param({"INPROC", "IPC", "TCP"})
+    public Transport transport;
+
+    BenchmarkContext zctx;
+
+    @Setup
+    public void setup() {
+        zctx = new BenchmarkContext(new AllocatorFactory(Allocators.resolve(allocator), 1, ContextTopology.SHARED, transport));
+    }
+
+    @TearDown
+    public void tearDown() {
+        zctx.stop();
+    }
+
+}
@@ -0,0 +1,63 @@
+package jmh.bench.workers;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+
+import jmh.plot.Curve;
+import jmh.plot.Draw;
+
+/**
+ * Draw the throughput against the number of server workers, one curve for each allocator
+ * and one file for each pattern, message size and client threads count.
+ */
+public class Plotter implements jmh.plot.Plotter {
+
+    // run -> allocator -> workers -> result
+    private final Map<String, Map<String, Map<Integer, RunResult>>> resultsMap = new HashMap<>();
+
+    public Plotter() {
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        String run = params.getParam("pattern") + "-" + params.getParam("msgSize") + "-" + params.getThreads() + "t";
+        resultsMap.computeIfAbsent(run, k -> new TreeMap<>(jmh.bench.allocators.Plotter.nodeComparator))
+                  .computeIfAbsent(params.getParam("allocator"), k -> new TreeMap<>())
+                  .put(Integer.parseInt(params.getParam("workers")), rr);
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        for (Map.Entry<String, Map<String, Map<Integer, RunResult>>> m: resultsMap.entrySet()) {
+            TreeSet<Integer> workers = new TreeSet<>();
+            m.getValue().values().forEach(r -> workers.addAll(r.keySet()));
+            String[] labels = workers.stream().map(w -> w == 0 ? "no proxy" : w + " workers").toArray(String[]::new);
+            Curve[] curves = new Curve[m.getValue().size()];
+            int rank = 0;
+            double max = Double.MIN_VALUE;
+            for (Map.Entry<String, Map<Integer, RunResult>> e: m.getValue().entrySet()) {
+                double[] values = new double[workers.size()];
+                int i = 0;
+                for (Integer w: workers) {
+                    RunResult rr = e.getValue().get(w);
+                    values[i] = rr != null ? rr.getPrimaryResult().getScore() : Double.NaN;
+                    if (rr != null) {
+                        max = Math.max(max, values[i]);
+                        System.out.format("%s %s %s %s%n", m.getKey(), e.getKey(), w, values[i]);
+                    }
+                    i++;
+                }
+                curves[rank++] = new Curve(e.getKey(), values);
+            }
+            svgName = svgName.replace(".svg", "");
+            Draw.lines(svgName + "-workers-" + m.getKey() + ".svg", labels, max, Draw.interval(max), " op/s", curves);
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package jmh.bench.workers;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import jmh.plot.PlottingClass;
+
+/**
+ * Requests throughput against the number of server workers behind a proxy. The run without workers
+ * gives the cost of the proxy hop. It should be run with many threads, as each client waits for it's answer.
+ */
+@PlottingClass(plotter = Plotter.class)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Workers {
+
+    @Benchmark
+    public void queryAnswer(WorkersState state, ThreadState threadState) throws Exception {
+        state.zctx.queryAnswerMessage(threadState.s.getSocket(), state.msgSize);
+    }
+
+}
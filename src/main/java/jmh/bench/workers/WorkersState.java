@@ -0,0 +1,38 @@
+package jmh.bench.workers;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jmh.allocators.Allocators;
+import jmh.bench.latency.LatencyFactory;
+import jmh.perf.BenchmarkContext;
+
+@State(Scope.Benchmark)
+public class WorkersState {
+
+    @Param({"100", "10000"})
+    public int msgSize;
+    @Param({"nettyDirectRelease", "slab", "heap"})
+    public String allocator;
+    @Param({"reqrep", "dealerrouter"})
+    public String pattern;
+    // The number of server workers, 0 is a single server without a proxy
+    @Param({"0", "1", "2", "4", "8"})
+    public int workers;
+
+    BenchmarkContext zctx;
+
+    @Setup
+    public void setup() {
+        zctx = new BenchmarkContext(new LatencyFactory(Allocators.resolve(allocator), pattern, workers));
+    }
+
+    @TearDown
+    public void tearDown() {
+        zctx.stop();
+    }
+
+}
@@ -0,0 +1,59 @@
+package jmh.history;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import lombok.Getter;
+
+/**
+ * A result saved in the {@link HistoryStore}, with the context of the run that produced it.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+@Getter
+public class HistoryEntry {
+
+    // When the run was saved, in milliseconds since the epoch, shared by all the results of a run
+    private final long timestamp;
+    private final String commit;
+    private final String jvm;
+    private final String jeromq;
+    private final String benchmark;
+    private final String mode;
+    private final int threads;
+    // The warmup, measurement and forks settings, fast and full runs are not comparable
+    private final String settings;
+    private final Map<String, String> params;
+    private final double score;
+    private final double error;
+    private final String unit;
+
+    HistoryEntry(long timestamp, String commit, String jvm, String jeromq, String benchmark, String mode, int threads,
+                 String settings, Map<String, String> params, double score, double error, String unit) {
+        this.timestamp = timestamp;
+        this.commit = commit;
+        this.jvm = jvm;
+        this.jeromq = jeromq;
+        this.benchmark = benchmark;
+        this.mode = mode;
+        this.threads = threads;
+        this.settings = settings;
+        this.params = params;
+        this.score = score;
+        this.error = error;
+        this.unit = unit;
+    }
+
+    /**
+     * @return the benchmark, mode, thread count, run settings and parameters, that identify a configuration across runs
+     */
+    public String getConfiguration() {
+        return benchmark + " " + mode + " " + threads + "t " + settings + " " + getParamsLabel();
+    }
+
+    public String getParamsLabel() {
+        return params.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(","));
+    }
+
+}
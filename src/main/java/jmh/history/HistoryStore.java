@@ -0,0 +1,225 @@
+package jmh.history;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * An append-only store of the results of all the runs, in a binary file <code>history.bin</code> in the results directory.<p>
+ * The file starts with a magic number and a version, followed by length prefixed records, one for each result.
+ * It's only read sequentially, one record at a time, so the history is never loaded in memory. A truncated last record,
+ * from an interrupted write, is ignored.<p>
+ * Each record keeps the iterations settings of the run, so the runs done with <code>-f</code> are never compared with the full ones.
+ * The records of the version 1, without them, are still read, but new records are never appended to such a file.<p>
+ * The commit is the one the jar was built from, as saved in it's manifest by the build.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class HistoryStore {
+
+    public static final String DEFAULT_DIRECTORY = "results";
+    private static final String FILENAME = "history.bin";
+    private static final int MAGIC = 0x4A4D4848;
+    private static final int VERSION = 2;
+    private static final String UNKNOWN = "unknown";
+    // The manifest attributes set by the build
+    private static final String GIT_COMMIT = "Git-Commit";
+    private static final String GIT_DIRTY = "Git-Dirty";
+
+    private final Path file;
+
+    public HistoryStore(Path directory) {
+        this.file = directory.resolve(FILENAME);
+    }
+
+    /**
+     * Append the results of a run
+     * @param results
+     * @throws IOException
+     */
+    public void append(Collection<RunResult> results) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        String commit = gitCommit();
+        String jeromq = jeromqVersion();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(records);
+        for (RunResult rr: results) {
+            BenchmarkParams params = rr.getParams();
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream recordOut = new DataOutputStream(record);
+            recordOut.writeLong(timestamp);
+            recordOut.writeUTF(commit);
+            recordOut.writeUTF(params.getVmName() + " " + params.getVmVersion());
+            recordOut.writeUTF(jeromq);
+            recordOut.writeUTF(params.getBenchmark());
+            recordOut.writeUTF(params.getMode().shortLabel());
+            recordOut.writeInt(params.getThreads());
+            recordOut.writeUTF(settings(params));
+            recordOut.writeShort(params.getParamsKeys().size());
+            for (String key: params.getParamsKeys()) {
+                recordOut.writeUTF(key);
+                recordOut.writeUTF(params.getParam(key));
+            }
+            recordOut.writeDouble(rr.getPrimaryResult().getScore());
+            recordOut.writeDouble(rr.getPrimaryResult().getScoreError());
+            recordOut.writeUTF(rr.getPrimaryResult().getScoreUnit());
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+        Files.createDirectories(file.getParent());
+        // Locked, so concurrent runs can share a store
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip();
+                    channel.write(header);
+                } else if (version() != VERSION) {
+                    throw new IOException("History " + file + " is in an older format, move it away to start a new one");
+                }
+                channel.write(ByteBuffer.wrap(records.toByteArray()));
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Read the history, one entry at a time
+     * @param filter the entries to keep
+     * @param consumer
+     * @throws IOException
+     */
+    public void scan(Predicate<HistoryEntry> filter, Consumer<HistoryEntry> consumer) throws IOException {
+        if (! Files.isReadable(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             InputStream is = new BufferedInputStream(Channels.newInputStream(channel));
+             DataInputStream in = new DataInputStream(is)) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Not a results history: " + file);
+            }
+            while (true) {
+                byte[] record;
+                try {
+                    record = new byte[in.readInt()];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+                HistoryEntry entry = read(new DataInputStream(new ByteArrayInputStream(record)), version);
+                if (filter.test(entry)) {
+                    consumer.accept(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the version in the header of the existing file
+     */
+    private int version() throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC ? in.readInt() : -1;
+        }
+    }
+
+    private HistoryEntry read(DataInputStream in, int version) throws IOException {
+        long timestamp = in.readLong();
+        String commit = in.readUTF();
+        String jvm = in.readUTF();
+        String jeromq = in.readUTF();
+        String benchmark = in.readUTF();
+        String mode = in.readUTF();
+        int threads = in.readInt();
+        String settings = version > 1 ? in.readUTF() : UNKNOWN;
+        int paramsCount = in.readShort();
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < paramsCount; i++) {
+            params.put(in.readUTF(), in.readUTF());
+        }
+        double score = in.readDouble();
+        double error = in.readDouble();
+        String unit = in.readUTF();
+        return new HistoryEntry(timestamp, commit, jvm, jeromq, benchmark, mode, threads, settings, params, score, error, unit);
+    }
+
+    /**
+     * @return the warmup and measurement iterations and times, and the forks, like <code>w10x1s-i20x60s-f1</code>
+     */
+    static String settings(BenchmarkParams params) {
+        IterationParams warmup = params.getWarmup();
+        IterationParams measurement = params.getMeasurement();
+        return String.format("w%dx%s-i%dx%s-f%d", warmup.getCount(), warmup.getTime().toString().replace(" ", ""),
+                             measurement.getCount(), measurement.getTime().toString().replace(" ", ""), params.getForks());
+    }
+
+    /**
+     * @return the commit saved in the manifest of the jar at build time, with a -dirty suffix if the sources were modified, or unknown
+     * when not run from the jar
+     */
+    private static String gitCommit() {
+        try {
+            URL location = HistoryStore.class.getProtectionDomain().getCodeSource().getLocation();
+            Path path = Paths.get(location.toURI());
+            if (! Files.isRegularFile(path)) {
+                return UNKNOWN;
+            }
+            try (JarFile jar = new JarFile(path.toFile())) {
+                Manifest manifest = jar.getManifest();
+                String commit = manifest != null ? manifest.getMainAttributes().getValue(GIT_COMMIT) : null;
+                if (commit == null || commit.isEmpty() || commit.startsWith("${")) {
+                    return UNKNOWN;
+                }
+                return "true".equals(manifest.getMainAttributes().getValue(GIT_DIRTY)) ? commit + "-dirty" : commit;
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return UNKNOWN;
+        }
+    }
+
+    private static String jeromqVersion() {
+        try (InputStream is = zmq.ZMQ.class.getResourceAsStream("/META-INF/maven/org.zeromq/jeromq/pom.properties")) {
+            if (is != null) {
+                Properties props = new Properties();
+                props.load(is);
+                return props.getProperty("version", UNKNOWN);
+            }
+        } catch (IOException e) {
+            // Falls back to the manifest
+        }
+        String version = zmq.ZMQ.class.getPackage().getImplementationVersion();
+        return version != null ? version : UNKNOWN;
+    }
+
+}
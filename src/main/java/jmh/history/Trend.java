@@ -0,0 +1,93 @@
+package jmh.history;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import jmh.plot.Curve;
+import jmh.plot.Draw;
+
+/**
+ * The evolution of the scores of the configurations found in the {@link HistoryStore}.<p>
+ * Only the entries given are kept, so the history is filtered while it's read. The plots draw the score against
+ * the runs. There is one curve for each allocator, and one file for each benchmark, run settings and combination of the others parameters,
+ * like the {@link jmh.plot.ScalingPlotter}. So the fast runs are never drawn with the full ones.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class Trend {
+
+    // plot -> curve -> timestamp -> entry
+    private final Map<String, Map<String, Map<Long, HistoryEntry>>> entries = new TreeMap<>();
+
+    public void addEntry(HistoryEntry entry) {
+        StringBuilder plot = new StringBuilder(entry.getBenchmark().substring(entry.getBenchmark().lastIndexOf('.', entry.getBenchmark().lastIndexOf('.') - 1) + 1));
+        plot.append('-').append(entry.getMode()).append('-').append(entry.getThreads()).append('t').append('-').append(entry.getSettings());
+        String curve = entry.getBenchmark();
+        for (Map.Entry<String, String> e: entry.getParams().entrySet()) {
+            if ("allocator".equals(e.getKey())) {
+                curve = e.getValue();
+            } else {
+                plot.append('-').append(e.getValue());
+            }
+        }
+        // A later run replaces an earlier one with the same timestamp
+        entries.computeIfAbsent(plot.toString(), k -> new TreeMap<>())
+               .computeIfAbsent(curve, k -> new TreeMap<>())
+               .put(entry.getTimestamp(), entry);
+    }
+
+    public void print(PrintStream out) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        for (Map<String, Map<Long, HistoryEntry>> curves: entries.values()) {
+            for (Map<Long, HistoryEntry> runs: curves.values()) {
+                out.println(runs.values().iterator().next().getConfiguration());
+                for (HistoryEntry e: runs.values()) {
+                    out.format("  %s  %-20s  %-10s  %-30s  %14.3f ± %-12.3f %s%n", dateFormat.format(new Date(e.getTimestamp())), e.getCommit(),
+                               e.getJeromq(), e.getJvm(), e.getScore(), e.getError(), e.getUnit());
+                }
+            }
+        }
+    }
+
+    public void drawSvg(String svgName) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm");
+        for (Map.Entry<String, Map<String, Map<Long, HistoryEntry>>> m: entries.entrySet()) {
+            // The runs found in any curve of this plot
+            TreeSet<Long> timestamps = new TreeSet<>();
+            m.getValue().values().forEach(r -> timestamps.addAll(r.keySet()));
+            List<String> labels = new ArrayList<>(timestamps.size());
+            for (Long t: timestamps) {
+                HistoryEntry e = m.getValue().values().stream().filter(r -> r.containsKey(t)).findFirst().get().get(t);
+                labels.add("unknown".equals(e.getCommit()) ? dateFormat.format(new Date(t)) : e.getCommit().substring(0, Math.min(7, e.getCommit().length())));
+            }
+            Curve[] curves = new Curve[m.getValue().size()];
+            int rank = 0;
+            double max = Double.MIN_VALUE;
+            String unit = "";
+            for (Map.Entry<String, Map<Long, HistoryEntry>> e: m.getValue().entrySet()) {
+                double[] values = new double[timestamps.size()];
+                int i = 0;
+                for (Long t: timestamps) {
+                    HistoryEntry entry = e.getValue().get(t);
+                    values[i] = entry != null ? entry.getScore() : Double.NaN;
+                    if (entry != null) {
+                        unit = entry.getUnit();
+                        max = Math.max(max, values[i]);
+                    }
+                    i++;
+                }
+                curves[rank++] = new Curve(e.getKey(), values);
+            }
+            Draw.lines(svgName.replace(".svg", "") + "-trend-" + m.getKey() + ".svg", labels.toArray(String[]::new), max, Draw.interval(max), " " + unit, curves);
+        }
+    }
+
+}
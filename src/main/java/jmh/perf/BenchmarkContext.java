@@ -1,8 +1,12 @@
 package jmh.perf;
 
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 
@@ -14,6 +18,7 @@ import zmq.Ctx;
 import zmq.Msg;
 import zmq.SocketBase;
 import zmq.ZMQ;
+import zmq.poll.PollItem;
 
 /**
  * A ZMQ wrapper that provides convenient methods to run ZMQ benchs.
@@ -27,21 +32,47 @@ public class BenchmarkContext {
     private final CompletableFuture<Object> failure = new CompletableFuture<>();
     private final Thread.UncaughtExceptionHandler failureHandler = this::errorHandler;
     private final Thread server;
+    // The context used by the client sockets, null if each client thread has it's own
     private final Ctx ctx;
+    private final Ctx serverCtx;
     private final ZMQFactory factory;
     private final ZMQFactory.ServerProcessing processing;
+    private final LatencyHistogram inFlight;
+    // The endpoints that the clients connect to, resolved by the server binds
+    private List<String> endpoints;
+    // The server workers or pipeline stages, and the proxy control endpoint, when the factory asks for workers
+    private final List<Thread> workers = new CopyOnWriteArrayList<>();
+    private volatile String controlEndpoint = null;
+
+    // The poll timeout, as an interrupted selector doesn't stop the poll
+    private static final long POLL_TIMEOUT = 100;
 
     // Used to handle failing server and notify every benchmark threads
     private final Set<Thread> benchTreads = ConcurrentHashMap.newKeySet();
+    // The server is interrupted on stop, it's failure must not be propagated to the threads still tearing down
+    private volatile boolean stopping = false;
 
     public BenchmarkContext(ZMQFactory factory) {
         this.factory = factory;
-        ctx = factory.getContext();
-        ctx.setUncaughtExceptionHandler((t, e) -> {
-            e.printStackTrace();
-            RmiProvider.stop();
-            System.exit(1);
-        });
+        endpoints = List.of(factory.getUrl());
+        if (factory.getUrl().startsWith("inproc://") && factory.getContextTopology() != ContextTopology.SHARED) {
+            throw new IllegalArgumentException("inproc transport needs a shared context");
+        }
+        serverCtx = newContext();
+        switch (factory.getContextTopology()) {
+        case SHARED:
+            ctx = serverCtx;
+            break;
+        case SERVER:
+            ctx = newContext();
+            break;
+        case PER_THREAD:
+            ctx = null;
+            break;
+        default:
+            throw new IllegalArgumentException("Unhandled context topology " + factory.getContextTopology());
+        }
+        inFlight = factory.getInFlightHistogram();
         processing = factory.withServer() ? factory.getServerProcessing(this) : null;
         server = factory.withServer() ? getServer() : null;
     }
@@ -55,7 +86,24 @@ public class BenchmarkContext {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        ThreadBuilder.get().setTask(() -> ctx.terminate()).build(true);
+        if (ctx != null && ctx != serverCtx) {
+            terminate(ctx);
+        }
+        terminate(serverCtx);
+    }
+
+    private Ctx newContext() {
+        Ctx newCtx = factory.getContext();
+        newCtx.setUncaughtExceptionHandler((t, e) -> {
+            e.printStackTrace();
+            RmiProvider.stop();
+            System.exit(1);
+        });
+        return newCtx;
+    }
+
+    private void terminate(Ctx oldCtx) {
+        ThreadBuilder.get().setTask(oldCtx::terminate).build(true);
     }
 
     private Thread getServer() {
@@ -77,12 +125,27 @@ public class BenchmarkContext {
 
     private void errorHandler(Thread t, Throwable ex) {
         failure.completeExceptionally(ex);
-        benchTreads.forEach(Thread::interrupt);
+        if (! stopping) {
+            benchTreads.forEach(Thread::interrupt);
+        }
     }
 
     public void stopServer() throws InterruptedException {
         if (server != null && serverRunning()) {
-            server.interrupt();
+            stopping = true;
+            if (controlEndpoint != null) {
+                // An interrupted proxy would spin in it's poll, it must be terminated
+                SocketBase control = ZMQ.socket(serverCtx, ZMQ.ZMQ_PAIR);
+                try {
+                    if (ZMQ.connect(control, controlEndpoint)) {
+                        control.send(new Msg(ZMQ.PROXY_TERMINATE), 0);
+                    }
+                } finally {
+                    control.close();
+                }
+            } else {
+                server.interrupt();
+            }
         }
     }
 
@@ -91,21 +154,254 @@ public class BenchmarkContext {
     }
 
     private void runServer() {
-        SocketBase serverSocket = factory.getServerSocket(ctx);
+        if (factory.getPipelineStages() > 0) {
+            runPipeline();
+        } else if (factory.getServerWorkers() > 0) {
+            runProxy();
+        } else {
+            runSingleServer();
+        }
+    }
+
+    private void runSingleServer() {
+        SocketBase[] serverSockets = new SocketBase[factory.getServerSockets()];
         try {
-            boolean rc = serverSocket.bind(factory.getUrl());
-            if (!rc) {
-                throw new ZMQException("error in server bind", serverSocket.errno());
+            List<String> serverEndpoints = new ArrayList<>(serverSockets.length);
+            for (int i = 0; i < serverSockets.length; i++) {
+                serverSockets[i] = factory.getServerSocket(serverCtx);
+                boolean rc = serverSockets[i].bind(factory.getUrl());
+                if (!rc) {
+                    throw new ZMQException("error in server bind", serverSockets[i].errno());
+                }
+                serverEndpoints.add((String) serverSockets[i].getSocketOptx(ZMQ.ZMQ_LAST_ENDPOINT));
+            }
+            // Seen by the clients thanks to the barrier
+            endpoints = serverEndpoints;
+            serverBarrier.countDown();
+            serve(serverSockets);
+        } finally {
+            for (SocketBase serverSocket: serverSockets) {
+                if (serverSocket != null) {
+                    serverSocket.close();
+                }
+            }
+        }
+    }
+
+    private void runProxy() {
+        SocketBase frontend = factory.getFrontendSocket(serverCtx);
+        SocketBase backend = factory.getBackendSocket(serverCtx);
+        SocketBase control = ZMQ.socket(serverCtx, ZMQ.ZMQ_PAIR);
+        try {
+            if (! frontend.bind(factory.getUrl())) {
+                throw new ZMQException("error in frontend bind", frontend.errno());
+            }
+            endpoints = List.of((String) frontend.getSocketOptx(ZMQ.ZMQ_LAST_ENDPOINT));
+            if (! backend.bind(factory.getBackendUrl())) {
+                throw new ZMQException("error in backend bind", backend.errno());
+            }
+            String backendEndpoint = (String) backend.getSocketOptx(ZMQ.ZMQ_LAST_ENDPOINT);
+            String proxyControl = Transport.INPROC.getEndpoint();
+            if (! control.bind(proxyControl)) {
+                throw new ZMQException("error in control bind", control.errno());
+            }
+            CountDownLatch workersBarrier = new CountDownLatch(factory.getServerWorkers());
+            for (int i = 0; i < factory.getServerWorkers(); i++) {
+                workers.add(ThreadBuilder.get()
+                                         .setDaemon(false)
+                                         .setTask(() -> runWorker(backendEndpoint, workersBarrier))
+                                         .setExceptionHandler(failureHandler)
+                                         .setName("ZMQWorker" + i)
+                                         .build(true));
+            }
+            // Wait for all the workers to be connected
+            workersBarrier.await();
+            controlEndpoint = proxyControl;
+            serverBarrier.countDown();
+            ZMQ.proxy(frontend, backend, null, control);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.forEach(Thread::interrupt);
+            frontend.close();
+            backend.close();
+            control.close();
+        }
+    }
+
+    /**
+     * The server socket is the sink, each stage worker receives from it's own bound socket and sends to all the sockets of the next stage,
+     * or to the sink. The clients send to all the sockets of the first stage.
+     */
+    private void runPipeline() {
+        SocketBase sink = factory.getServerSocket(serverCtx);
+        try {
+            List<String> nextEndpoints = List.of(bind(sink));
+            for (int stage = factory.getPipelineStages() - 1; stage >= 0; stage--) {
+                List<String> stageEndpoints = new ArrayList<>();
+                for (int i = 0; i < factory.getPipelineWorkers(); i++) {
+                    SocketBase input = factory.getServerSocket(serverCtx);
+                    SocketBase output = factory.getStageOutputSocket(serverCtx);
+                    stageEndpoints.add(bind(input));
+                    for (String e: nextEndpoints) {
+                        if (! ZMQ.connect(output, e)) {
+                            throw new ZMQException("error in stage connect", output.errno());
+                        }
+                    }
+                    // The sockets are given to the worker, the thread start is a memory barrier
+                    workers.add(ThreadBuilder.get()
+                                             .setDaemon(false)
+                                             .setTask(() -> runStage(input, output))
+                                             .setExceptionHandler(failureHandler)
+                                             .setName("ZMQWorker" + stage + "." + i)
+                                             .build(true));
+                }
+                nextEndpoints = stageEndpoints;
             }
+            endpoints = nextEndpoints;
             serverBarrier.countDown();
+            serve(sink);
+        } finally {
+            workers.forEach(Thread::interrupt);
+            sink.close();
+        }
+    }
+
+    private String bind(SocketBase s) {
+        if (! s.bind(factory.getBackendUrl())) {
+            throw new ZMQException("error in pipeline bind", s.errno());
+        }
+        return (String) s.getSocketOptx(ZMQ.ZMQ_LAST_ENDPOINT);
+    }
+
+    private void runStage(SocketBase input, SocketBase output) {
+        ZMQFactory.StageProcessing stageProcessing = factory.getStageProcessing(this);
+        try {
+            while (! Thread.interrupted()) {
+                stageProcessing.process(input, output);
+            }
+        } finally {
+            input.close();
+            output.close();
+        }
+    }
+
+    private void runWorker(String backendEndpoint, CountDownLatch workersBarrier) {
+        SocketBase workerSocket = factory.getServerSocket(serverCtx);
+        try {
+            if (! ZMQ.connect(workerSocket, backendEndpoint)) {
+                throw new ZMQException("error in worker connect", workerSocket.errno());
+            }
+            workersBarrier.countDown();
+            serve(workerSocket);
+        } finally {
+            workerSocket.close();
+        }
+    }
+
+    /**
+     * Run the server processing until interrupted, using the engine given by the factory
+     * @param sockets the sockets to serve, the blocking engine serves each socket after the first one in a new thread
+     */
+    private void serve(SocketBase... sockets) {
+        switch (factory.getServerEngine()) {
+        case BLOCKING:
+            serveBlocking(sockets);
+            break;
+        case POLL:
+            servePoll(sockets);
+            break;
+        case SPIN:
+            while (! Thread.interrupted()) {
+                int processed = 0;
+                for (SocketBase s: sockets) {
+                    processed += drain(s);
+                }
+                if (processed == 0) {
+                    Thread.onSpinWait();
+                }
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unhandled server engine " + factory.getServerEngine());
+        }
+    }
+
+    private void serveBlocking(SocketBase[] sockets) {
+        List<Thread> threads = new ArrayList<>(sockets.length - 1);
+        for (int i = 1; i < sockets.length; i++) {
+            SocketBase s = sockets[i];
+            threads.add(ThreadBuilder.get()
+                                     .setDaemon(false)
+                                     .setTask(() -> {
+                                         while (! Thread.interrupted()) {
+                                             processing.process(s);
+                                         }
+                                     })
+                                     .setExceptionHandler(failureHandler)
+                                     .setName("ZMQServer" + i)
+                                     .build(true));
+        }
+        try {
             while (! Thread.interrupted()) {
-                processing.process(serverSocket);
+                processing.process(sockets[0]);
             }
         } finally {
-            serverSocket.close();
+            // The sockets are closed by the caller, once no thread uses them
+            threads.forEach(Thread::interrupt);
+            boolean interrupted = false;
+            for (Thread t: threads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
+    private void servePoll(SocketBase[] sockets) {
+        PollItem[] items = new PollItem[sockets.length];
+        for (int i = 0; i < sockets.length; i++) {
+            items[i] = new PollItem(sockets[i], ZMQ.ZMQ_POLLIN);
+        }
+        Selector selector = serverCtx.createSelector();
+        try {
+            while (! Thread.interrupted()) {
+                int rc = ZMQ.poll(selector, items, POLL_TIMEOUT);
+                if (rc < 0) {
+                    // The context is terminated
+                    break;
+                }
+                for (PollItem item: items) {
+                    if (item.isReadable()) {
+                        drain(item.getSocket());
+                    }
+                }
+            }
+        } finally {
+            serverCtx.closeSelector(selector);
+        }
+    }
+
+    /**
+     * Process the messages already received, up to the burst size, without blocking
+     * @param s
+     * @return the number of processed messages
+     */
+    private int drain(SocketBase s) {
+        int processed = 0;
+        // The processing uses blocking calls, so it's called only when a message is ready
+        while (processed < factory.getServerBurst() && (s.getSocketOpt(ZMQ.ZMQ_EVENTS) & ZMQ.ZMQ_POLLIN) != 0) {
+            processing.process(s);
+            processed++;
+        }
+        return processed;
+    }
+
     private boolean checkServer() {
         if (server != null) {
             if (failure.isCompletedExceptionally()) {
@@ -133,12 +429,16 @@ public class BenchmarkContext {
 
         @Getter
         private final SocketBase socket;
+        private final Ctx socketCtx;
 
         StatefullSocket() {
             benchTreads.add(Thread.currentThread());
-            socket = factory.getClientSocket(ctx);
-            if (! ZMQ.connect(socket, factory.getUrl())) {
-                throw new ZMQException("error in connect", socket.errno());
+            socketCtx = ctx != null ? ctx : newContext();
+            socket = factory.getClientSocket(socketCtx);
+            for (String endpoint: endpoints) {
+                if (! ZMQ.connect(socket, endpoint)) {
+                    throw new ZMQException("error in connect", socket.errno());
+                }
             }
         }
 
@@ -146,6 +446,9 @@ public class BenchmarkContext {
             if (socket != null) {
                 socket.close();
             }
+            if (socketCtx != ctx) {
+                terminate(socketCtx);
+            }
             benchTreads.remove(Thread.currentThread());
         }
 
@@ -171,6 +474,70 @@ public class BenchmarkContext {
         }
     }
 
+    /**
+     * A method that can be used in a client benchmark<p>
+     * Send many messages, but don't expect an answer. The server is checked only once, so the benchmark
+     * should use the number of messages as it's operations per invocation.
+     * @param s The socket to use for the messages
+     * @param msgSize the message size
+     * @param msgSend the number of messages to send
+     */
+    public void simpleSendMessages(SocketBase s, int msgSize, int msgSend) {
+        if (! checkServer()) {
+            throw new IllegalStateException("Server is dead");
+        }
+        for (int i = 0; i < msgSend; i++) {
+            Msg msg = factory.getQueryMsg(msgSize);
+            boolean rc = s.send(msg, 0);
+            if (! rc) {
+                throw new ZMQException("error in simpleSendMessages:send", s.errno());
+            }
+        }
+    }
+
+    /**
+     * A method that can be used in a server loop or a client benchmark<p>
+     * Send a multipart message, each frame is generated by {@link ZMQFactory#getFrameMsg(int, int, int)}, but don't expect an answer
+     * @param s The socket to use for the message
+     * @param frames the number of frames
+     * @param frameSize the size of each frame
+     */
+    public void multipartSendMessage(SocketBase s, int frames, int frameSize) {
+        if (! checkServer()) {
+            throw new IllegalStateException("Server is dead");
+        }
+        for (int i = 0; i < frames; i++) {
+            Msg msg = factory.getFrameMsg(i, frames, frameSize);
+            boolean rc = s.send(msg, i < frames - 1 ? ZMQ.ZMQ_SNDMORE : 0);
+            if (! rc) {
+                throw new ZMQException("error in multipartSendMessage:send", s.errno());
+            }
+        }
+        if (! checkServer()) {
+            throw new IllegalStateException("Server is dead");
+        }
+    }
+
+    /**
+     * A method that can be used in an open loop client benchmark<p>
+     * Send a message at the time scheduled by the pacer, stamped with the intended send time, so the latency recorded by
+     * {@link #consume(SocketBase)} in the in-flight histogram includes the delay of a late send.
+     * @param s The socket to use for the message
+     * @param msgSize the message size
+     * @param pacer the send schedule
+     */
+    public void pacedSendMessage(SocketBase s, int msgSize, Pacer pacer) {
+        long intended = pacer.acquire();
+        if (! checkServer()) {
+            throw new IllegalStateException("Server is dead");
+        }
+        Msg msg = stamp(factory.getQueryMsg(msgSize), intended);
+        boolean rc = s.send(msg, 0);
+        if (! rc) {
+            throw new ZMQException("error in pacedSendMessage:send", s.errno());
+        }
+    }
+
     /**
      * A method that can be used in a server loop or a client benchmark<p>
      * Send a message, and wait for an answer
@@ -193,6 +560,33 @@ public class BenchmarkContext {
         if (smsg == null) {
             throw new ZMQException("error in queryAnswerMessage:recv", s.errno());
         }
+        factory.releaseMsg(smsg);
+    }
+
+    /**
+     * A method that can be used in a client benchmark<p>
+     * Send many messages, and wait for an answer to each of them. The server is checked only once, so the benchmark
+     * should use the number of messages as it's operations per invocation.
+     * @param s The socket to use for the messages
+     * @param msgSize the message size
+     * @param msgSend the number of messages to send
+     */
+    public void queryAnswerMessages(SocketBase s, int msgSize, int msgSend) {
+        if (! checkServer()) {
+            throw new IllegalStateException("Server is dead");
+        }
+        for (int i = 0; i < msgSend; i++) {
+            Msg msg = factory.getQueryMsg(msgSize);
+            boolean rc = s.send(msg, 0);
+            if (! rc) {
+                throw new ZMQException("error in queryAnswerMessages:send", s.errno());
+            }
+            Msg smsg = s.recv(0);
+            if (smsg == null) {
+                throw new ZMQException("error in queryAnswerMessages:recv", s.errno());
+            }
+            factory.releaseMsg(smsg);
+        }
     }
 
     /**
@@ -205,6 +599,50 @@ public class BenchmarkContext {
         if (cmsg == null) {
             throw new ZMQException("error in consume:recv", s.errno());
         }
+        if (inFlight != null && cmsg.size() >= Long.BYTES) {
+            inFlight.record(System.nanoTime() - cmsg.buf().getLong(0));
+        }
+        factory.releaseMsg(cmsg);
+    }
+
+    /**
+     * Write the current time at the start of a query, so it's in-flight time can be recorded when it's consumed.
+     * Messages smaller than a long are not stamped.
+     * @param msg
+     * @return the same message
+     */
+    public static Msg stamp(Msg msg) {
+        return stamp(msg, System.nanoTime());
+    }
+
+    /**
+     * Write the given time at the start of a query, messages smaller than a long are not stamped.
+     * @param msg
+     * @param time the time, as given by {@link System#nanoTime()}, from which the in-flight time is counted
+     * @return the same message
+     */
+    public static Msg stamp(Msg msg, long time) {
+        if (msg.size() >= Long.BYTES) {
+            msg.buf().putLong(0, time);
+        }
+        return msg;
+    }
+
+    /**
+     * A method that can be used in a server loop or a client benchmark<p>
+     * Consume all the frames of a received multipart message
+     * @param s The query message
+     */
+    public void consumeMultipart(SocketBase s) {
+        boolean more;
+        do {
+            Msg cmsg = s.recv(0);
+            if (cmsg == null) {
+                throw new ZMQException("error in consumeMultipart:recv", s.errno());
+            }
+            more = cmsg.hasMore();
+            factory.releaseMsg(cmsg);
+        } while (more);
     }
 
     /**
@@ -218,13 +656,68 @@ public class BenchmarkContext {
         if (cmsg == null) {
             throw new ZMQException("error in consume:recv", s.errno());
         }
+        Msg smsg = null;
         if (factory.waitAnswser()) {
-            Msg smsg = factory.getAnswerMsg(cmsg);
+            smsg = factory.getAnswerMsg(cmsg);
             rc = s.send(smsg, 0);
             if (!rc) {
                 throw new ZMQException("error in consume:send", s.errno());
             }
         }
+        // An echoed message is still used by the I/O thread
+        if (smsg != cmsg) {
+            factory.releaseMsg(cmsg);
+        }
+    }
+
+    /**
+     * A method that can be used in a pipeline stage<p>
+     * Wait for a message and send to the next stage the message given by {@link ZMQFactory#getAnswerMsg(Msg)}
+     * @param input The socket receiving from the previous stage
+     * @param output The socket sending to the next stage
+     */
+    public void forwardMessage(SocketBase input, SocketBase output) {
+        Msg cmsg = input.recv(0);
+        if (cmsg == null) {
+            throw new ZMQException("error in forwardMessage:recv", input.errno());
+        }
+        Msg smsg = factory.getAnswerMsg(cmsg);
+        if (! output.send(smsg, 0)) {
+            throw new ZMQException("error in forwardMessage:send", output.errno());
+        }
+        // A forwarded message is still used by the I/O thread
+        if (smsg != cmsg) {
+            factory.releaseMsg(cmsg);
+        }
+    }
+
+    /**
+     * A method that can be used in a server loop<p>
+     * Wait for a message on a ROUTER socket and process it, the answer is routed back using the identity frame
+     * @param s The router socket
+     */
+    public void routeMessage(SocketBase s) {
+        boolean rc;
+        Msg id = s.recv(0);
+        if (id == null) {
+            throw new ZMQException("error in routeMessage:recv", s.errno());
+        }
+        Msg cmsg = s.recv(0);
+        if (cmsg == null) {
+            throw new ZMQException("error in routeMessage:recv", s.errno());
+        }
+        Msg smsg = null;
+        if (factory.waitAnswser()) {
+            smsg = factory.getAnswerMsg(cmsg);
+            rc = s.send(id, ZMQ.ZMQ_SNDMORE) && s.send(smsg, 0);
+            if (!rc) {
+                throw new ZMQException("error in routeMessage:send", s.errno());
+            }
+        }
+        // An echoed message is still used by the I/O thread
+        if (smsg != cmsg) {
+            factory.releaseMsg(cmsg);
+        }
     }
 
 }
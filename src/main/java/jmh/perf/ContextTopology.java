@@ -0,0 +1,22 @@
+package jmh.perf;
+
+/**
+ * How the ZMQ contexts, and so their I/O threads, are shared between the server and the client threads.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public enum ContextTopology {
+    /**
+     * One context for the server and all the clients
+     */
+    SHARED,
+    /**
+     * The server and each client thread have their own context
+     */
+    PER_THREAD,
+    /**
+     * The clients share one context, the server has it's own
+     */
+    SERVER,
+}
@@ -0,0 +1,53 @@
+package jmh.perf;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A low overhead concurrent counter of events, that can be incremented by any thread, like the server or the workers.
+ * Named counters are reported as a rate by the {@link EventCounterProfiler} after each iteration.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class EventCounter {
+
+    private static final Map<String, EventCounter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Get the named counter, created if needed
+     * @param name
+     * @return
+     */
+    public static EventCounter get(String name) {
+        return counters.computeIfAbsent(name, k -> new EventCounter());
+    }
+
+    static Map<String, EventCounter> getAll() {
+        return counters;
+    }
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long events) {
+        count.add(events);
+    }
+
+    public void reset() {
+        count.reset();
+    }
+
+    /**
+     * Read and reset the counter, events counted concurrently might be lost.
+     * @return the number of events since the last reset
+     */
+    public long sumThenReset() {
+        return count.sumThenReset();
+    }
+
+}
@@ -0,0 +1,54 @@
+package jmh.perf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Report the rate of each {@link EventCounter} as secondary results, in events per second.
+ * Counters are reset before each iteration.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class EventCounterProfiler implements InternalProfiler {
+
+    private static final String UNIT = "ops/s";
+
+    private long startTime;
+
+    @Override
+    public String getDescription() {
+        return "Rate of the event counters";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        EventCounter.getAll().values().forEach(EventCounter::reset);
+        startTime = System.nanoTime();
+    }
+
+    @Override
+    public Collection<? extends Result<?>> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+        List<Result<?>> results = new ArrayList<>();
+        for (Map.Entry<String, EventCounter> e: EventCounter.getAll().entrySet()) {
+            long count = e.getValue().sumThenReset();
+            if (count == 0) {
+                continue;
+            }
+            results.add(new ScalarResult(e.getKey(), count / elapsed, UNIT, AggregationPolicy.AVG));
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,253 @@
+package jmh.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.ExternalProfiler;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.ScalarResult;
+import org.openjdk.jmh.runner.IterationType;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Record the measurement iterations of each benchmark in a JFR file, using the <code>profile</code> settings,
+ * and summarize it once the fork is finished.<p>
+ * The summary is given as secondary results, so it's also saved in the JSON results:
+ * <ul>
+ * <li><code>jfr.cpu:&lt;method&gt;</code>, the share of the execution samples for the top frames, in percent,</li>
+ * <li><code>jfr.alloc:&lt;method&gt;</code>, the share of the sampled allocated bytes for the top allocation sites, in percent,</li>
+ * <li><code>jfr.lock:&lt;class&gt;@&lt;method&gt;</code>, the time blocked on the most contended monitors, in milliseconds,</li>
+ * <li><code>jfr.park:&lt;class&gt;@&lt;method&gt;</code>, the time parked on the most contended <code>java.util.concurrent</code> locks,
+ * by the class of the parked on object and the first frame out of the locks implementation, in milliseconds. Only the parks of more
+ * than 10 ms are recorded.</li>
+ * </ul>
+ * It's given the directory where the recordings are kept as initialization line.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class JfrProfiler implements ExternalProfiler, InternalProfiler {
+
+    public static final String DEFAULT_DIRECTORY = "jfr";
+    private static final int TOP = 5;
+    private static final String CPU = "jfr.cpu:";
+    private static final String ALLOC = "jfr.alloc:";
+    private static final String LOCK = "jfr.lock:";
+    private static final String PARK = "jfr.park:";
+
+    private final Path directory;
+    private Recording recording;
+    private int measurementIterations;
+
+    public JfrProfiler(String initLine) {
+        directory = Paths.get(initLine == null || initLine.isBlank() ? DEFAULT_DIRECTORY : initLine.trim());
+    }
+
+    @Override
+    public String getDescription() {
+        return "JFR recording of the measurement iterations, with a summary of the hot methods";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        if (iterationParams.getType() == IterationType.MEASUREMENT && recording == null) {
+            try {
+                recording = new Recording(Configuration.getConfiguration("profile"));
+            } catch (IOException | ParseException e) {
+                throw new IllegalStateException("Unusable JFR settings: " + e.getMessage(), e);
+            }
+            recording.start();
+        }
+    }
+
+    @Override
+    public Collection<? extends Result<?>> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+        if (iterationParams.getType() == IterationType.MEASUREMENT && ++measurementIterations == iterationParams.getCount()) {
+            try {
+                Files.createDirectories(directory);
+                recording.dump(recordingFile(benchmarkParams));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                recording.close();
+            }
+        }
+        return List.of();
+    }
+
+    @Override
+    public Collection<String> addJVMInvokeOptions(BenchmarkParams params) {
+        return List.of();
+    }
+
+    @Override
+    public Collection<String> addJVMOptions(BenchmarkParams params) {
+        // Frames are then resolved outside of safepoints too
+        return List.of("-XX:+UnlockDiagnosticVMOptions", "-XX:+DebugNonSafepoints");
+    }
+
+    @Override
+    public void beforeTrial(BenchmarkParams benchmarkParams) {
+        // Nothing to do, recording is done in the forked JVM
+    }
+
+    @Override
+    public Collection<? extends Result<?>> afterTrial(BenchmarkResult br, long pid, File stdOut, File stdErr) {
+        Path file = recordingFile(br.getParams());
+        if (! Files.isReadable(file)) {
+            return List.of();
+        }
+        Map<String, Long> cpu = new HashMap<>();
+        Map<String, Long> allocSamples = new HashMap<>();
+        Map<String, Long> allocTlab = new HashMap<>();
+        Map<String, Long> locks = new HashMap<>();
+        Map<String, Long> parks = new HashMap<>();
+        // Events are read one by one, recordings can be big
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                switch (event.getEventType().getName()) {
+                case "jdk.ExecutionSample":
+                    cpu.merge(topFrame(event), 1L, Long::sum);
+                    break;
+                case "jdk.ObjectAllocationSample":
+                    allocSamples.merge(topFrame(event), event.getLong("weight"), Long::sum);
+                    break;
+                case "jdk.ObjectAllocationInNewTLAB":
+                    allocTlab.merge(topFrame(event), event.getLong("tlabSize"), Long::sum);
+                    break;
+                case "jdk.ObjectAllocationOutsideTLAB":
+                    allocTlab.merge(topFrame(event), event.getLong("allocationSize"), Long::sum);
+                    break;
+                case "jdk.JavaMonitorEnter":
+                    locks.merge(event.getClass("monitorClass").getName() + "@" + topFrame(event), event.getDuration().toNanos(), Long::sum);
+                    break;
+                case "jdk.ThreadPark":
+                    RecordedClass parkedClass = event.getClass("parkedClass");
+                    parks.merge((parkedClass != null ? parkedClass.getName() : "unknown") + "@" + parkerFrame(event), event.getDuration().toNanos(), Long::sum);
+                    break;
+                default:
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<Result<?>> results = new ArrayList<>();
+        addShares(results, CPU, cpu);
+        // The allocation samples are only available since Java 16, the TLAB events are used before
+        addShares(results, ALLOC, allocSamples.isEmpty() ? allocTlab : allocSamples);
+        top(locks).forEach(e -> results.add(new ScalarResult(LOCK + e.getKey(), e.getValue() / 1e6, "ms", AggregationPolicy.AVG)));
+        top(parks).forEach(e -> results.add(new ScalarResult(PARK + e.getKey(), e.getValue() / 1e6, "ms", AggregationPolicy.AVG)));
+        return results;
+    }
+
+    @Override
+    public boolean allowPrintOut() {
+        return true;
+    }
+
+    @Override
+    public boolean allowPrintErr() {
+        return true;
+    }
+
+    /**
+     * Print the JFR summary of a benchmark, if it was recorded
+     * @param rr
+     * @param out
+     */
+    public static void printSummary(RunResult rr, PrintStream out) {
+        List<Result<?>> secondaries = new ArrayList<>();
+        for (Result<?> r: rr.getSecondaryResults().values()) {
+            secondaries.add(r);
+        }
+        if (secondaries.stream().noneMatch(r -> r.getLabel().startsWith("jfr."))) {
+            return;
+        }
+        BenchmarkParams params = rr.getParams();
+        out.format("%s %s%n", params.getBenchmark(), params.getParamsKeys().stream().map(k -> k + "=" + params.getParam(k)).collect(Collectors.joining(", ")));
+        for (String[] category: new String[][] {{CPU, "Top CPU frames"}, {ALLOC, "Top allocation sites"}, {LOCK, "Top contended monitors"}, {PARK, "Top parking sites"}}) {
+            out.format("  %s%n", category[1]);
+            secondaries.stream()
+                       .filter(r -> r.getLabel().startsWith(category[0]))
+                       .sorted(Comparator.comparingDouble((Result<?> r) -> r.getScore()).reversed())
+                       .forEach(r -> out.format("    %8.2f %-3s %s%n", r.getScore(), r.getScoreUnit(), r.getLabel().substring(category[0].length())));
+        }
+    }
+
+    private Path recordingFile(BenchmarkParams params) {
+        StringBuilder name = new StringBuilder(params.getBenchmark());
+        for (String key: params.getParamsKeys()) {
+            name.append('-').append(key).append('=').append(params.getParam(key));
+        }
+        name.append('-').append(params.getThreads()).append('t');
+        return directory.resolve(name.toString().replaceAll("[^\\p{Alnum}._=-]", "_") + ".jfr");
+    }
+
+    private static String topFrame(RecordedEvent event) {
+        RecordedStackTrace stack = event.getStackTrace();
+        if (stack == null || stack.getFrames().isEmpty()) {
+            return "unknown";
+        } else {
+            RecordedFrame frame = stack.getFrames().get(0);
+            return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+        }
+    }
+
+    /**
+     * The frame that parked, the frames of <code>java.util.concurrent.locks</code> and of the JDK internal <code>Unsafe</code> are skipped
+     */
+    private static String parkerFrame(RecordedEvent event) {
+        RecordedStackTrace stack = event.getStackTrace();
+        if (stack != null) {
+            for (RecordedFrame frame: stack.getFrames()) {
+                String type = frame.getMethod().getType().getName();
+                if (! type.startsWith("java.util.concurrent.locks.") && ! "jdk.internal.misc.Unsafe".equals(type)) {
+                    return type + "." + frame.getMethod().getName();
+                }
+            }
+        }
+        return "unknown";
+    }
+
+    private static void addShares(List<Result<?>> results, String prefix, Map<String, Long> values) {
+        double total = values.values().stream().mapToLong(Long::longValue).sum();
+        top(values).forEach(e -> results.add(new ScalarResult(prefix + e.getKey(), 100.0 * e.getValue() / total, "%", AggregationPolicy.AVG)));
+    }
+
+    private static List<Map.Entry<String, Long>> top(Map<String, Long> values) {
+        return values.entrySet().stream()
+                     .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                     .limit(TOP)
+                     .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,113 @@
+package jmh.perf;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A low overhead concurrent histogram of latencies, in nanoseconds.<p>
+ * Values are stored in log-linear buckets, each power of two is split in 64 buckets, so the precision is about 1.5%.
+ * Named histograms are reported by the {@link LatencyProfiler} after each iteration.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class LatencyHistogram {
+
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Get the named histogram, created if needed
+     * @param name
+     * @return
+     */
+    public static LatencyHistogram get(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    static Map<String, LatencyHistogram> getAll() {
+        return histograms;
+    }
+
+    private static final int SUBBITS = 6;
+    private static final int SUBBUCKETS = 1 << SUBBITS;
+    private static final int BUCKETS = (64 - SUBBITS) * SUBBUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long value) {
+        counts.incrementAndGet(index(Math.max(value, 0)));
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Copy and reset the histogram, values recorded concurrently might be lost.
+     * @return the count in each bucket
+     */
+    public long[] snapshot() {
+        long[] values = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            values[i] = counts.getAndSet(i, 0);
+        }
+        return values;
+    }
+
+    /**
+     * Resolve a percentile from a snapshot
+     * @param snapshot
+     * @param percentile between 0 and 100
+     * @return the upper value of the bucket holding the percentile, or NaN if the snapshot is empty
+     */
+    public static double percentile(long[] snapshot, double percentile) {
+        long total = 0;
+        for (long c: snapshot) {
+            total += c;
+        }
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return highestValue(snapshot.length - 1);
+    }
+
+    public static long count(long[] snapshot) {
+        long total = 0;
+        for (long c: snapshot) {
+            total += c;
+        }
+        return total;
+    }
+
+    static int index(long value) {
+        if (value < SUBBUCKETS) {
+            return (int) value;
+        } else {
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUBBITS)) & (SUBBUCKETS - 1);
+            return (exponent - SUBBITS + 1) * SUBBUCKETS + sub;
+        }
+    }
+
+    static long highestValue(int index) {
+        if (index < SUBBUCKETS) {
+            return index;
+        } else {
+            int exponent = index / SUBBUCKETS + SUBBITS - 1;
+            long sub = index % SUBBUCKETS;
+            return ((SUBBUCKETS + sub + 1) << (exponent - SUBBITS)) - 1;
+        }
+    }
+
+}
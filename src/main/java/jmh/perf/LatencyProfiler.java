@@ -0,0 +1,58 @@
+package jmh.perf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Report the percentiles of each {@link LatencyHistogram} as secondary results, in microseconds.
+ * Histograms are reset before each iteration.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class LatencyProfiler implements InternalProfiler {
+
+    private static final double[] PERCENTILES = new double[] {50, 99, 99.9, 99.99};
+    private static final String UNIT = "us";
+
+    @Override
+    public String getDescription() {
+        return "Percentiles of the latency histograms";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        LatencyHistogram.getAll().values().forEach(LatencyHistogram::reset);
+    }
+
+    @Override
+    public Collection<? extends Result<?>> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+        List<Result<?>> results = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> e: LatencyHistogram.getAll().entrySet()) {
+            long[] snapshot = e.getValue().snapshot();
+            if (LatencyHistogram.count(snapshot) == 0) {
+                continue;
+            }
+            for (double p: PERCENTILES) {
+                results.add(new ScalarResult(e.getKey() + ".p" + percentileName(p), LatencyHistogram.percentile(snapshot, p) / 1000.0, UNIT, AggregationPolicy.AVG));
+            }
+            results.add(new ScalarResult(e.getKey() + ".max", LatencyHistogram.percentile(snapshot, 100) / 1000.0, UNIT, AggregationPolicy.MAX));
+        }
+        return results;
+    }
+
+    private static String percentileName(double p) {
+        return p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p);
+    }
+
+}
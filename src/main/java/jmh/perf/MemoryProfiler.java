@@ -0,0 +1,161 @@
+package jmh.perf;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import jmh.ThreadBuilder;
+
+/**
+ * Sample the memory footprint of the process during each iteration, and report the peak and the average
+ * of each value, in bytes:
+ * <ul>
+ * <li>the memory used by the direct and mapped buffer pools, from the {@link BufferPoolMXBean},</li>
+ * <li>the resident set size, from <code>/proc/self/status</code>, when available,</li>
+ * <li>the memory committed by the JVM, from the native memory tracking summary, only when the JVM is started with
+ * <code>-XX:NativeMemoryTracking=summary</code> or <code>detail</code>.</li>
+ * </ul>
+ * The peak is the maximum over the iterations, the average is the mean of the iterations' averages.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class MemoryProfiler implements InternalProfiler {
+
+    private static final long SAMPLING_INTERVAL = 100;
+    // A NMT summary is expensive, so it's sampled less often
+    private static final int NMT_SAMPLING_RATIO = 10;
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+    private static final Pattern RSS_PATTERN = Pattern.compile("^VmRSS:\\s+(\\d+) kB", Pattern.MULTILINE);
+    private static final Pattern NMT_PATTERN = Pattern.compile("Total: reserved=(\\d+)KB, committed=(\\d+)KB");
+
+    private static class Sample {
+        private long peak = 0;
+        private long sum = 0;
+        private long count = 0;
+        private void add(long value) {
+            peak = Math.max(peak, value);
+            sum += value;
+            count++;
+        }
+    }
+
+    private final List<BufferPoolMXBean> pools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                                                                  .filter(p -> "direct".equals(p.getName()) || "mapped".equals(p.getName()))
+                                                                  .collect(Collectors.toList());
+    private final boolean withRss = Files.isReadable(PROC_STATUS);
+    private final boolean withNmt = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                                                     .anyMatch(a -> a.startsWith("-XX:NativeMemoryTracking=") && ! a.endsWith("=off"));
+    // Only modified by the sampling thread, read once it's stopped
+    private final Map<String, Sample> samples = new LinkedHashMap<>();
+    private Thread sampler;
+
+    @Override
+    public String getDescription() {
+        return "Peak and average of the direct, mapped, resident and native memory";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        samples.clear();
+        sampler = ThreadBuilder.get().setDaemon(true).setTask(this::sample).setName("MemoryProfiler").build(true);
+    }
+
+    @Override
+    public Collection<? extends Result<?>> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+        sampler.interrupt();
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Result<?>> results = new ArrayList<>();
+        for (Map.Entry<String, Sample> e: samples.entrySet()) {
+            Sample s = e.getValue();
+            // Unused pools, like the mapped one for most allocators, are skipped
+            if (s.peak > 0) {
+                results.add(new ScalarResult(e.getKey() + ".peak", s.peak, "B", AggregationPolicy.MAX));
+                results.add(new ScalarResult(e.getKey() + ".avg", (double) s.sum / s.count, "B", AggregationPolicy.AVG));
+            }
+        }
+        return results;
+    }
+
+    private void sample() {
+        // The first sample is taken immediately, so even very short iterations have one
+        for (int tick = 0; ; tick++) {
+            for (BufferPoolMXBean pool: pools) {
+                record("mem." + pool.getName(), pool.getMemoryUsed());
+            }
+            if (withRss) {
+                record("mem.rss", readRss());
+            }
+            if (withNmt && tick % NMT_SAMPLING_RATIO == 0) {
+                record("mem.nmt.committed", readNmtCommitted());
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(SAMPLING_INTERVAL);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void record(String name, long value) {
+        if (value >= 0) {
+            samples.computeIfAbsent(name, k -> new Sample()).add(value);
+        }
+    }
+
+    /**
+     * @return the resident set size, in bytes, or -1 if it can't be read
+     */
+    private long readRss() {
+        try {
+            Matcher m = RSS_PATTERN.matcher(Files.readString(PROC_STATUS));
+            return m.find() ? Long.parseLong(m.group(1)) * 1024 : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the committed memory from the native memory tracking, in bytes, or -1 if it can't be read
+     */
+    private long readNmtCommitted() {
+        try {
+            String summary = (String) ManagementFactory.getPlatformMBeanServer().invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                                                                                         "vmNativeMemory",
+                                                                                         new Object[] {new String[] {"summary"}},
+                                                                                         new String[] {String[].class.getName()});
+            Matcher m = NMT_PATTERN.matcher(summary);
+            return m.find() ? Long.parseLong(m.group(2)) * 1024 : -1;
+        } catch (JMException e) {
+            return -1;
+        }
+    }
+
+}
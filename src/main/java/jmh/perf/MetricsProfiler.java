@@ -0,0 +1,116 @@
+package jmh.perf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import jmh.allocators.MetricsAllocator;
+
+/**
+ * Report the metrics of the allocators registry as secondary results, after each iteration:
+ * <ul>
+ * <li>the rate of each meter during the iteration, like the reclamation rate or the bytes reclaimed,</li>
+ * <li>the value of each counter and gauge at the end of the iteration, like the outstanding buffers,</li>
+ * <li>the median and the 99th percentile of each histogram, and of each timer in microseconds, with it's maximum.</li>
+ * </ul>
+ * The histograms and the timers are cleared before each iteration, so they only hold the values of the iteration.
+ * The release lag and the live buffers of the allocators are only tracked once this profiler is created.
+ * Metrics that are not used by the benchmark are not reported. It can be used with <code>-p jmh.perf.MetricsProfiler</code>.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class MetricsProfiler implements InternalProfiler {
+
+    private final MetricRegistry metrics = MetricsAllocator.getMetrics();
+    private final Map<String, Long> startCounts = new HashMap<>();
+    private long startTime;
+
+    public MetricsProfiler() {
+        MetricsAllocator.setTracking(true);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Metrics of the allocators";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        startCounts.clear();
+        metrics.getMeters().forEach((k, v) -> startCounts.put(k, v.getCount()));
+        metrics.getHistograms().forEach((k, v) -> startCounts.put(k, v.getCount()));
+        metrics.getTimers().forEach((k, v) -> startCounts.put(k, v.getCount()));
+        MetricsAllocator.clearReservoirs();
+        startTime = System.nanoTime();
+    }
+
+    @Override
+    public Collection<? extends Result<?>> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+        List<Result<?>> results = new ArrayList<>();
+        for (Map.Entry<String, Meter> e: metrics.getMeters().entrySet()) {
+            long count = e.getValue().getCount() - startCounts.getOrDefault(e.getKey(), 0L);
+            if (count != 0) {
+                results.add(new ScalarResult(shortName(e.getKey()) + ".rate", count / elapsed, unit(e.getKey(), "ops") + "/s", AggregationPolicy.AVG));
+            }
+        }
+        for (Map.Entry<String, Counter> e: metrics.getCounters().entrySet()) {
+            if (e.getValue().getCount() != 0) {
+                results.add(new ScalarResult(shortName(e.getKey()), e.getValue().getCount(), unit(e.getKey(), "#"), AggregationPolicy.AVG));
+            }
+        }
+        // The registry gives raw gauges
+        metrics.getGauges().forEach((k, v) -> {
+            Object value = v.getValue();
+            if (value instanceof Number && ((Number) value).doubleValue() != 0) {
+                results.add(new ScalarResult(shortName(k), ((Number) value).doubleValue(), unit(k, "#"), AggregationPolicy.AVG));
+            }
+        });
+        for (Map.Entry<String, Histogram> e: metrics.getHistograms().entrySet()) {
+            if (e.getValue().getCount() != startCounts.getOrDefault(e.getKey(), 0L)) {
+                Snapshot snapshot = e.getValue().getSnapshot();
+                results.add(new ScalarResult(shortName(e.getKey()) + ".p50", snapshot.getMedian(), unit(e.getKey(), "#"), AggregationPolicy.AVG));
+                results.add(new ScalarResult(shortName(e.getKey()) + ".p99", snapshot.get99thPercentile(), unit(e.getKey(), "#"), AggregationPolicy.AVG));
+            }
+        }
+        for (Map.Entry<String, Timer> e: metrics.getTimers().entrySet()) {
+            if (e.getValue().getCount() != startCounts.getOrDefault(e.getKey(), 0L)) {
+                Snapshot snapshot = e.getValue().getSnapshot();
+                results.add(new ScalarResult(shortName(e.getKey()) + ".p50", snapshot.getMedian() / 1000.0, "us", AggregationPolicy.AVG));
+                results.add(new ScalarResult(shortName(e.getKey()) + ".p99", snapshot.get99thPercentile() / 1000.0, "us", AggregationPolicy.AVG));
+                results.add(new ScalarResult(shortName(e.getKey()) + ".max", snapshot.getMax() / 1000.0, "us", AggregationPolicy.MAX));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Remove the package from the metric name
+     */
+    private static String shortName(String name) {
+        return name.startsWith("jmh.allocators.") ? name.substring("jmh.allocators.".length()) : name;
+    }
+
+    private static String unit(String name, String countUnit) {
+        return name.endsWith("Bytes") ? "B" : countUnit;
+    }
+
+}
@@ -0,0 +1,55 @@
+package jmh.perf;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Schedule events at a fixed rate, for open loop benchmarks.<p>
+ * The schedule never slips, if the caller is late, the next events are due immediately, so the latency
+ * measured from the intended time includes the time spent waiting for the previous events.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class Pacer {
+
+    // Below that, spin instead of parking
+    private static final long SPINTHRESHOLD = 100_000;
+
+    private final long period;
+    private long next;
+
+    /**
+     * @param rate the number of events per second
+     */
+    public Pacer(double rate) {
+        period = (long) (1_000_000_000L / rate);
+        reset();
+    }
+
+    /**
+     * Restart the schedule from now
+     */
+    public void reset() {
+        next = System.nanoTime();
+    }
+
+    /**
+     * Wait for the next scheduled time
+     * @return the intended time of the event, as given by {@link System#nanoTime()}
+     */
+    public long acquire() {
+        long intended = next;
+        next += period;
+        long now;
+        while ((now = System.nanoTime()) < intended) {
+            long wait = intended - now;
+            if (wait > SPINTHRESHOLD) {
+                LockSupport.parkNanos(wait - SPINTHRESHOLD / 2);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return intended;
+    }
+
+}
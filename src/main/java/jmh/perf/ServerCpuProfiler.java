@@ -0,0 +1,66 @@
+package jmh.perf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Report the CPU used by the server and the workers threads started by the {@link BenchmarkContext}, in percent
+ * of one core. A server thread started or stopped during an iteration is only counted while it's alive.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public class ServerCpuProfiler implements InternalProfiler {
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private Map<Long, Long> startCpu = new HashMap<>();
+    private long startTime;
+
+    @Override
+    public String getDescription() {
+        return "CPU used by the ZMQ server threads";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        startCpu = serverCpu();
+        startTime = System.nanoTime();
+    }
+
+    @Override
+    public Collection<? extends Result<?>> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+        long elapsed = System.nanoTime() - startTime;
+        long used = 0;
+        for (Map.Entry<Long, Long> e: serverCpu().entrySet()) {
+            used += e.getValue() - startCpu.getOrDefault(e.getKey(), 0L);
+        }
+        return List.of(new ScalarResult("server.cpu", 100.0 * used / elapsed, "%", AggregationPolicy.AVG));
+    }
+
+    private Map<Long, Long> serverCpu() {
+        Map<Long, Long> cpu = new HashMap<>();
+        for (ThreadInfo ti: threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (ti != null && (ti.getThreadName().startsWith("ZMQServer") || ti.getThreadName().startsWith("ZMQWorker"))) {
+                long time = threads.getThreadCpuTime(ti.getThreadId());
+                if (time >= 0) {
+                    cpu.put(ti.getThreadId(), time);
+                }
+            }
+        }
+        return cpu;
+    }
+
+}
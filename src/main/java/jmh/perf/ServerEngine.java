@@ -0,0 +1,22 @@
+package jmh.perf;
+
+/**
+ * How the server loop waits for messages before calling the {@link ZMQFactory.ServerProcessing}.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public enum ServerEngine {
+    /**
+     * The processing is called in a loop, and blocks in the receive
+     */
+    BLOCKING,
+    /**
+     * The server sockets are polled, and at each wake up, up to a burst of ready messages are processed
+     */
+    POLL,
+    /**
+     * Like {@link #POLL}, but the sockets are checked in a busy loop, that never sleeps
+     */
+    SPIN,
+}
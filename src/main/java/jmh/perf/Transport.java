@@ -0,0 +1,45 @@
+package jmh.perf;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The transports that a {@link ZMQFactory} can use. The endpoints are allocated automatically, so runs never collide:
+ * TCP and IPC use a wildcard resolved by the bind, inproc gets a unique name.
+ *
+ * @author Fabrice Bacchella
+ *
+ */
+public enum Transport {
+    /**
+     * Messages are given to the peer without encoding, the server and the clients must share the context
+     */
+    INPROC {
+        @Override
+        public String getEndpoint() {
+            return "inproc://jeromqperf" + count.incrementAndGet();
+        }
+    },
+    /**
+     * jeromq emulates IPC with loopback TCP, with a port derived from the name
+     */
+    IPC {
+        @Override
+        public String getEndpoint() {
+            return "ipc://*";
+        }
+    },
+    TCP {
+        @Override
+        public String getEndpoint() {
+            return "tcp://127.0.0.1:*";
+        }
+    };
+
+    private static final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * @return a new endpoint to bind
+     */
+    public abstract String getEndpoint();
+
+}
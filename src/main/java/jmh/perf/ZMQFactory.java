@@ -3,6 +3,7 @@ package jmh.perf;
 import zmq.Ctx;
 import zmq.Msg;
 import zmq.SocketBase;
+import zmq.ZMQ;
 
 /**
  * @author Fabrice Bacchella
@@ -14,6 +15,10 @@ public interface ZMQFactory {
         public void process(SocketBase s);
     }
 
+    public interface StageProcessing {
+        public void process(SocketBase input, SocketBase output);
+    }
+
     /**
      * If it return true, a ZMQ server will be started
      * @return True if a server is needed
@@ -33,7 +38,16 @@ public interface ZMQFactory {
     Ctx getContext();
 
     /**
-     * The URL used for the connection
+     * How the contexts are shared, {@link #getContext()} is called for each needed context
+     * @return the context topology
+     */
+    default ContextTopology getContextTopology() {
+        return ContextTopology.SHARED;
+    }
+
+    /**
+     * The URL used for the bind of the server. It can use a wildcard, as the clients connect to the endpoint
+     * that was really bound. Without a server, the clients connect to it.
      * @return
      */
     String getUrl();
@@ -45,6 +59,101 @@ public interface ZMQFactory {
      */
     SocketBase getServerSocket(Ctx ctx);
     
+    /**
+     * The number of server workers. With 0, a single server thread uses the server socket bound to the URL.
+     * Else each worker uses it's own server socket, fed by a {@link zmq.Proxy} between the frontend and the backend sockets.
+     * @return the number of server workers
+     */
+    default int getServerWorkers() {
+        return 0;
+    }
+
+    /**
+     * The number of sockets bound by a server without workers, the clients connect to all of them.
+     * The polling engines serve them all from the server thread, the blocking engine needs a thread for each.
+     * @return the number of server sockets
+     */
+    default int getServerSockets() {
+        return 1;
+    }
+
+    /**
+     * How the server, or each worker, waits for messages
+     * @return the server engine
+     */
+    default ServerEngine getServerEngine() {
+        return ServerEngine.BLOCKING;
+    }
+
+    /**
+     * The maximum number of messages processed on each wake up of a polling server engine
+     * @return the burst size
+     */
+    default int getServerBurst() {
+        return 64;
+    }
+
+    /**
+     * Create the proxy socket bound to the URL, only used with server workers. The default is a ROUTER.
+     * @param ctx
+     * @return
+     */
+    default SocketBase getFrontendSocket(Ctx ctx) {
+        return ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+    }
+
+    /**
+     * Create the proxy socket bound to the backend URL, that the workers connect to, only used with server workers. The default is a DEALER.
+     * @param ctx
+     * @return
+     */
+    default SocketBase getBackendSocket(Ctx ctx) {
+        return ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+    }
+
+    /**
+     * The number of stages of a pipeline between the clients and the server, that is then the sink.
+     * With 0, there is no pipeline.
+     * @return the number of stages
+     */
+    default int getPipelineStages() {
+        return 0;
+    }
+
+    /**
+     * The number of workers in each pipeline stage
+     * @return the number of workers
+     */
+    default int getPipelineWorkers() {
+        return 1;
+    }
+
+    /**
+     * Create the socket used by a pipeline stage to send to the next stage. The receiving socket is given by {@link #getServerSocket(Ctx)}.
+     * The default is a PUSH.
+     * @param ctx
+     * @return
+     */
+    default SocketBase getStageOutputSocket(Ctx ctx) {
+        return ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+    }
+
+    /**
+     * The processing in each pipeline stage
+     * @return
+     */
+    default StageProcessing getStageProcessing(BenchmarkContext ctx) {
+        return ctx::forwardMessage;
+    }
+
+    /**
+     * The URL used for the bind of the proxy backend, or of each pipeline socket. It can use a wildcard.
+     * @return
+     */
+    default String getBackendUrl() {
+        return Transport.INPROC.getEndpoint();
+    }
+
     /**
      * Create an socket that will be used by the client, in the iteration loops
      * @param ctx
@@ -60,12 +169,39 @@ public interface ZMQFactory {
     Msg getQueryMsg(int msgSize);
 
     /**
-     * Generate an answer message, from a query
+     * Generate a frame of a multipart query message
+     * @param frame the rank of the frame, starting from 0
+     * @param frames the number of frames in the message
+     * @param frameSize the size of the frame
+     * @return
+     */
+    default Msg getFrameMsg(int frame, int frames, int frameSize) {
+        return getQueryMsg(frameSize);
+    }
+
+    /**
+     * Generate an answer message, from a query. The query itself can be returned, it's then not released
      * @param cmsg
      * @return
      */
     Msg getAnswerMsg(Msg cmsg);
 
+    /**
+     * The histogram where {@link BenchmarkContext#consume(SocketBase)} records the in-flight time of the queries,
+     * that must have been stamped with {@link BenchmarkContext#stamp(Msg)}.
+     * @return the histogram, or null if queries are not stamped
+     */
+    default LatencyHistogram getInFlightHistogram() {
+        return null;
+    }
+
+    /**
+     * Called once a received message is not used any more, so it's buffer can be reused immediately
+     * @param msg
+     */
+    default void releaseMsg(Msg msg) {
+    }
+
     /**
      * The processing in the server. It can directly call many helpers functions from the {@link BenchmarkContext}
      * @return
@@ -0,0 +1,35 @@
+package jmh.plot;
+
+import java.awt.Graphics2D;
+
+public class Curve {
+
+    public String name;
+    // One value for each label of the x axis, NaN for missing values
+    public double[] values;
+
+    public Curve(String s, double[] values) {
+        this.name = s;
+        this.values = values;
+    }
+
+    public void paint(Graphics2D g2d, double scale, int xoffset, int xstep, int yoffset) {
+        int previousX = -1;
+        int previousY = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i])) {
+                previousX = -1;
+                continue;
+            }
+            int x = xoffset + i * xstep;
+            int y = yoffset - (int) (values[i] * scale);
+            g2d.fillOval(x - 2, y - 2, 4, 4);
+            if (previousX >= 0) {
+                g2d.drawLine(previousX, previousY, x, y);
+            }
+            previousX = x;
+            previousY = y;
+        }
+    }
+
+}
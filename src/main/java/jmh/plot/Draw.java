@@ -25,6 +25,15 @@ public class Draw {
     static final int BPHEIGHT = OVERALLSCALE * 5;
     private static final DOMImplementation domImpl = GenericDOMImplementation.getDOMImplementation();
 
+    /**
+     * The interval between the graduations of an axis, the power of ten that gives about ten graduations up to the maximum
+     * @param chartMax the maximum value of the chart
+     * @return the interval, at least 1
+     */
+    public static int interval(double chartMax) {
+        return (int) Math.max(1, Math.pow(10, Math.ceil(Math.log10(chartMax / 10))));
+    }
+
     public static void generate(String filename, double chartMin, double chartMax, int interval, double scale, String unitBefore, String unitAfter, BoxPlot... boxPlots) throws IOException {
 
         String svgNS = "http://www.w3.org/2000/svg";
@@ -75,6 +84,72 @@ public class Draw {
         }
     }
 
+    private static final Color[] PALETTE = new Color[] {
+        new Color(0x1f77b4), new Color(0xff7f0e), new Color(0x2ca02c), new Color(0xd62728),
+        new Color(0x9467bd), new Color(0x8c564b), new Color(0xe377c2), new Color(0x7f7f7f),
+        new Color(0xbcbd22), new Color(0x17becf),
+    };
+
+    /**
+     * Draw curves, the x axis is made of evenly spaced labels, each curve provides a value for each label
+     */
+    public static void lines(String filename, String[] xLabels, double chartMax, int interval, String unitAfter, Curve... curves) throws IOException {
+
+        String svgNS = "http://www.w3.org/2000/svg";
+        Document document = domImpl.createDocument(svgNS, "svg", null);
+
+        SVGGraphics svgGenerator = new SVGGraphics(document);
+
+        try {
+            int xoffset = BPHEIGHT * 2;
+            int xstep = BPHEIGHT * 2;
+            int height = BPHEIGHT * 8;
+            // The width for the legend
+            int legendWidth = BPHEIGHT * 5;
+            int maxwidth = xoffset + xstep * xLabels.length + legendWidth;
+            int maxheight = height + BPHEIGHT * 2;
+            double scale = (height - BPHEIGHT * 0.5) / chartMax;
+            int yoffset = height + (int) (BPHEIGHT * 0.5);
+            svgGenerator.setSVGCanvasSize(new Dimension(maxwidth, maxheight));
+            // grid
+            svgGenerator.setPaint(Color.LIGHT_GRAY);
+            for (double i = interval; i <= chartMax; i += interval) {
+                int y = yoffset - (int) (i * scale);
+                svgGenerator.drawLine(xoffset, y, xoffset + xstep * xLabels.length, y);
+            }
+
+            svgGenerator.setPaint(Color.BLACK);
+            // y axis
+            svgGenerator.drawLine(xoffset, yoffset, xoffset, yoffset - height);
+            // x axis
+            svgGenerator.drawLine(xoffset, yoffset, xoffset + xstep * xLabels.length, yoffset);
+            // y axis labels
+            for (double i = 0; i <= chartMax; i += interval) {
+                anchoredText(svgGenerator, Math.round(i) + unitAfter, xoffset - OVERALLSCALE, yoffset - (int) (i * scale), "end");
+            }
+            // x axis labels
+            for (int i = 0; i < xLabels.length; i++) {
+                anchoredText(svgGenerator, xLabels[i], xoffset + (i + 1) * xstep, yoffset + (int) (BPHEIGHT * 0.5), "middle");
+            }
+
+            for (int i = 0; i < curves.length; i++) {
+                svgGenerator.setPaint(PALETTE[i % PALETTE.length]);
+                curves[i].paint(svgGenerator, scale, xoffset + xstep, xstep, yoffset);
+                // legend
+                int legendY = (int) ((i + 1) * BPHEIGHT * 0.5);
+                int legendX = xoffset + xstep * xLabels.length + OVERALLSCALE * 2;
+                svgGenerator.drawLine(legendX, legendY, legendX + OVERALLSCALE * 2, legendY);
+                svgGenerator.setPaint(Color.BLACK);
+                anchoredText(svgGenerator, curves[i].name, legendX + OVERALLSCALE * 3, legendY, "start");
+            }
+            try (Writer svgOut = Files.newBufferedWriter(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                svgGenerator.stream(svgOut, true);
+            }
+        } finally {
+            svgGenerator.dispose();
+        }
+    }
+
     public static void anchoredText(SVGGraphics svgGenerator, String string, int x, int y, String textAnchor) {
         Element text = svgGenerator.getDOMFactory().createElementNS(SVGConstants.SVG_NAMESPACE_URI, SVGConstants.SVG_TEXT_TAG);
         text.setAttributeNS(null, SVGConstants.SVG_X_ATTRIBUTE, svgGenerator.getGeneratorContext().doubleString(x));
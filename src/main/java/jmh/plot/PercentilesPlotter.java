@@ -0,0 +1,68 @@
+package jmh.plot;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * Draw the percentiles of a latency histogram, as reported by the {@link jmh.perf.LatencyProfiler}. There is one curve
+ * for each allocator, and one file for each benchmark and combination of the others parameters.
+ */
+public class PercentilesPlotter implements Plotter {
+
+    private static final String[] PERCENTILES = new String[] {"p50", "p99", "p99.9", "p99.99", "max"};
+
+    private final String histogram;
+    // run -> allocator -> result
+    private final Map<String, Map<String, RunResult>> resultsMap = new HashMap<>();
+
+    /**
+     * @param histogram the name of the histogram, the prefix of the secondary results
+     */
+    public PercentilesPlotter(String histogram) {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        StringBuilder run = new StringBuilder(params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1));
+        String allocator = params.getBenchmark();
+        for (String key: params.getParamsKeys()) {
+            if ("allocator".equals(key)) {
+                allocator = params.getParam(key);
+            } else {
+                run.append('-').append(params.getParam(key));
+            }
+        }
+        resultsMap.computeIfAbsent(run.toString(), k -> new TreeMap<>()).put(allocator, rr);
+    }
+
+    @Override
+    public void drawSvg(String svgName) throws IOException {
+        for (Map.Entry<String, Map<String, RunResult>> m: resultsMap.entrySet()) {
+            Curve[] curves = new Curve[m.getValue().size()];
+            int rank = 0;
+            double max = Double.MIN_VALUE;
+            for (Map.Entry<String, RunResult> e: m.getValue().entrySet()) {
+                double[] values = new double[PERCENTILES.length];
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    Result<?> r = e.getValue().getSecondaryResults().get(histogram + "." + PERCENTILES[i]);
+                    values[i] = r != null ? r.getScore() : Double.NaN;
+                    if (r != null) {
+                        max = Math.max(max, values[i]);
+                    }
+                }
+                System.out.format("%s %s %s %s %s %s %s %n", m.getKey(), e.getKey(), values[0], values[1], values[2], values[3], values[4]);
+                curves[rank++] = new Curve(e.getKey(), values);
+            }
+            Draw.lines(svgName.replace(".svg", "") + "-" + histogram + "-" + m.getKey() + ".svg", PERCENTILES, max, Draw.interval(max), " us", curves);
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package jmh.plot;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * Draw the score against the number of threads. There is one curve for each allocator, and one file
+ * for each benchmark and combination of the others parameters.
+ */
+public class ScalingPlotter implements Plotter {
+
+    // run -> allocator -> threads -> result
+    private final Map<String, Map<String, Map<Integer, RunResult>>> resultsMap = new TreeMap<>();
+
+    @Override
+    public void addResult(RunResult rr) {
+        BenchmarkParams params = rr.getParams();
+        StringBuilder run = new StringBuilder(params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.', params.getBenchmark().lastIndexOf('.') - 1) + 1));
+        String allocator = params.getBenchmark();
+        for (String key: params.getParamsKeys()) {
+            if ("allocator".equals(key)) {
+                allocator = params.getParam(key);
+            } else {
+                run.append('-').append(params.getParam(key));
+            }
+        }
+        resultsMap.computeIfAbsent(run.toString(), k -> new HashMap<>())
+                  .computeIfAbsent(allocator, k -> new TreeMap<>())
+                  .put(params.getThreads(), rr);
+    }
+
+    @Override
+    public void drawSvg(String svgName) throws IOException {
+        for (Map.Entry<String, Map<String, Map<Integer, RunResult>>> m: resultsMap.entrySet()) {
+            TreeSet<Integer> threads = new TreeSet<>();
+            m.getValue().values().forEach(r -> threads.addAll(r.keySet()));
+            String[] labels = threads.stream().map(t -> t + " threads").toArray(String[]::new);
+            Curve[] curves = new Curve[m.getValue().size()];
+            int rank = 0;
+            double max = Double.MIN_VALUE;
+            String unit = "";
+            for (Map.Entry<String, Map<Integer, RunResult>> e: new TreeMap<>(m.getValue()).entrySet()) {
+                double[] values = new double[threads.size()];
+                int i = 0;
+                for (Integer t: threads) {
+                    RunResult rr = e.getValue().get(t);
+                    values[i] = rr != null ? rr.getPrimaryResult().getScore() : Double.NaN;
+                    if (rr != null) {
+                        unit = rr.getPrimaryResult().getScoreUnit();
+                        max = Math.max(max, values[i]);
+                        System.out.format("%s %s %s %s%n", m.getKey(), e.getKey(), t, values[i]);
+                    }
+                    i++;
+                }
+                curves[rank++] = new Curve(e.getKey(), values);
+            }
+            Draw.lines(svgName.replace(".svg", "") + "-scaling-" + m.getKey() + ".svg", labels, max, Draw.interval(max), " " + unit, curves);
+        }
+    }
+
+}
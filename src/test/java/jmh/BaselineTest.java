@@ -0,0 +1,133 @@
+package jmh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.IterationResultMetaData;
+import org.openjdk.jmh.results.ResultRole;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.SampleTimeResult;
+import org.openjdk.jmh.results.ThroughputResult;
+import org.openjdk.jmh.runner.IterationType;
+import org.openjdk.jmh.runner.WorkloadParams;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.openjdk.jmh.util.SampleBuffer;
+
+public class BaselineTest {
+
+    private static final String PUSH = "jmh.bench.allocators.Push.fireAndForgetBatch";
+    private static final Map<String, String> PUSH_PARAMS = Map.of("allocator", "heap", "msgSize", "100", "stamped", "false");
+    private static final String ROUNDTRIP = "jmh.bench.latency.RoundTrip.queryAnswer";
+    private static final Map<String, String> ROUNDTRIP_PARAMS = Map.of("allocator", "heap", "msgSize", "100", "pattern", "reqrep");
+
+    // The raw data of the baseline, in ops/s, the mean is about 172 500
+    private static final double[] PUSH_SCORES = {143032.59617511768, 149648.46325628806, 189092.5896662281, 176566.49476734677, 204314.04706720417};
+
+    @Test
+    public void sameScores() throws IOException, URISyntaxException {
+        assertVerdict("not significant", new Baseline(JsonTest.resource("thrpt.json")), 3, throughput(PUSH, PUSH_PARAMS, TimeUnit.SECONDS, PUSH_SCORES));
+    }
+
+    @Test
+    public void throughputVerdicts() throws IOException, URISyntaxException {
+        Baseline baseline = new Baseline(JsonTest.resource("thrpt.json"));
+        RunResult halved = throughput(PUSH, PUSH_PARAMS, TimeUnit.SECONDS, 86000, 86500, 85500, 86200, 85800);
+        assertVerdict("REGRESSED", baseline, 3, halved);
+        assertVerdict("degraded, within threshold", baseline, 60, halved);
+        RunResult doubled = throughput(PUSH, PUSH_PARAMS, TimeUnit.SECONDS, 345000, 346000, 344000, 345500, 344500);
+        assertVerdict("improved", baseline, 3, doubled);
+        RunResult slightlyLower = throughput(PUSH, PUSH_PARAMS, TimeUnit.SECONDS, 170000, 140000, 190000, 150000, 180000);
+        assertVerdict("not significant", baseline, 3, slightlyLower);
+        RunResult milliseconds = throughput(PUSH, PUSH_PARAMS, TimeUnit.MILLISECONDS, 86, 86, 85, 86, 85);
+        assertVerdict("unit changed, was ops/s", baseline, 3, milliseconds);
+        RunResult otherParams = throughput(PUSH, Map.of("allocator", "direct", "msgSize", "100", "stamped", "false"), TimeUnit.SECONDS, 86000, 86500);
+        assertVerdict("new", baseline, 3, otherParams);
+    }
+
+    @Test
+    public void regressionIsReported() throws IOException, URISyntaxException {
+        Baseline baseline = new Baseline(JsonTest.resource("thrpt.json"));
+        PrintStream out = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+        Assertions.assertTrue(baseline.compare(List.of(throughput(PUSH, PUSH_PARAMS, TimeUnit.SECONDS, 86000, 86500, 85500, 86200, 85800)), 3, out));
+        Assertions.assertFalse(baseline.compare(List.of(throughput(PUSH, PUSH_PARAMS, TimeUnit.SECONDS, PUSH_SCORES)), 3, out));
+    }
+
+    @Test
+    public void sampleVerdicts() throws IOException, URISyntaxException {
+        // The mean of the samples of each iteration of the baseline is between 7 500 and 12 500 us
+        Baseline baseline = new Baseline(JsonTest.resource("sample.json"));
+        RunResult slower = sample(ROUNDTRIP, ROUNDTRIP_PARAMS, new long[][] {{90_000_000, 110_000_000}, {95_000_000, 105_000_000}, {100_000_000}});
+        assertVerdict("REGRESSED", baseline, 3, slower);
+        RunResult faster = sample(ROUNDTRIP, ROUNDTRIP_PARAMS, new long[][] {{900_000, 1_100_000}, {950_000, 1_050_000}, {1_000_000}});
+        assertVerdict("not significant", baseline, 3, faster);
+        // With only 3 iterations in the baseline, a gain can't be bigger than it's mean, it needs a lower confidence
+        assertVerdict("improved", new Baseline(JsonTest.resource("sample.json"), 0.95), 3, faster);
+        RunResult same = sample(ROUNDTRIP, ROUNDTRIP_PARAMS, new long[][] {{12_410_880}, {9_594_880}, {7_558_485}});
+        assertVerdict("not significant", baseline, 3, same);
+    }
+
+    /**
+     * Compare a single result and check it's verdict, the last column of the table
+     */
+    private static void assertVerdict(String expected, Baseline baseline, double threshold, RunResult rr) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        baseline.compare(List.of(rr), threshold, new PrintStream(buffer, true, StandardCharsets.UTF_8));
+        String[] lines = buffer.toString(StandardCharsets.UTF_8).split("\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[1].endsWith("  " + expected), lines[1]);
+    }
+
+    private static RunResult throughput(String benchmark, Map<String, String> params, TimeUnit unit, double... scores) {
+        BenchmarkParams benchmarkParams = params(benchmark, Mode.Throughput, params, unit);
+        List<IterationResult> iterations = new ArrayList<>();
+        for (double score: scores) {
+            IterationResult ir = new IterationResult(benchmarkParams, benchmarkParams.getMeasurement(), new IterationResultMetaData(0, 0));
+            // The operations done in one output time unit
+            ir.addResult(new ThroughputResult(ResultRole.PRIMARY, "score", score, unit.toNanos(1), unit));
+            iterations.add(ir);
+        }
+        return new RunResult(benchmarkParams, List.of(new BenchmarkResult(benchmarkParams, iterations)));
+    }
+
+    private static RunResult sample(String benchmark, Map<String, String> params, long[][] samples) {
+        BenchmarkParams benchmarkParams = params(benchmark, Mode.SampleTime, params, TimeUnit.MICROSECONDS);
+        List<IterationResult> iterations = new ArrayList<>();
+        for (long[] iterationSamples: samples) {
+            SampleBuffer buffer = new SampleBuffer();
+            for (long sample: iterationSamples) {
+                buffer.add(sample);
+            }
+            IterationResult ir = new IterationResult(benchmarkParams, benchmarkParams.getMeasurement(), new IterationResultMetaData(0, 0));
+            ir.addResult(new SampleTimeResult(ResultRole.PRIMARY, "score", buffer, TimeUnit.MICROSECONDS));
+            iterations.add(ir);
+        }
+        return new RunResult(benchmarkParams, List.of(new BenchmarkResult(benchmarkParams, iterations)));
+    }
+
+    private static BenchmarkParams params(String benchmark, Mode mode, Map<String, String> params, TimeUnit unit) {
+        WorkloadParams workload = new WorkloadParams();
+        int order = 0;
+        for (Map.Entry<String, String> e: params.entrySet()) {
+            workload.put(e.getKey(), e.getValue(), order++);
+        }
+        IterationParams warmup = new IterationParams(IterationType.WARMUP, 1, TimeValue.seconds(1), 1);
+        IterationParams measurement = new IterationParams(IterationType.MEASUREMENT, 5, TimeValue.seconds(1), 1);
+        return new BenchmarkParams(benchmark, benchmark, false, 1, new int[] {1}, List.of(), 1, 0, warmup, measurement, mode, workload, unit, 1,
+                                   "java", List.of(), "17", "OpenJDK 64-Bit Server VM", "17", "1.33", TimeValue.minutes(10));
+    }
+
+}
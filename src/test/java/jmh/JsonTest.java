@@ -0,0 +1,92 @@
+package jmh;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class JsonTest {
+
+    static Path resource(String name) throws URISyntaxException {
+        return Paths.get(JsonTest.class.getResource(name).toURI());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void throughput() throws IOException, URISyntaxException {
+        List<Object> results = (List<Object>) Json.parse(resource("thrpt.json"));
+        Assertions.assertEquals(1, results.size());
+        Map<String, Object> result = (Map<String, Object>) results.get(0);
+        Assertions.assertEquals("jmh.bench.allocators.Push.fireAndForgetBatch", result.get("benchmark"));
+        Assertions.assertEquals("thrpt", result.get("mode"));
+        Assertions.assertEquals(1.0, result.get("threads"));
+        Assertions.assertEquals(List.of(), result.get("jvmArgs"));
+        Assertions.assertEquals(Map.of("allocator", "heap", "msgSize", "100", "stamped", "false"), result.get("params"));
+        Map<String, Object> primary = (Map<String, Object>) result.get("primaryMetric");
+        List<Object> rawData = (List<Object>) primary.get("rawData");
+        Assertions.assertEquals(1, rawData.size());
+        Assertions.assertEquals(5, ((List<Object>) rawData.get(0)).size());
+        Assertions.assertEquals(143032.59617511768, ((List<Object>) rawData.get(0)).get(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sample() throws IOException, URISyntaxException {
+        List<Object> results = (List<Object>) Json.parse(resource("sample.json"));
+        Map<String, Object> result = (Map<String, Object>) results.get(0);
+        Assertions.assertEquals("sample", result.get("mode"));
+        Map<String, Object> primary = (Map<String, Object>) result.get("primaryMetric");
+        Assertions.assertEquals("us/op", primary.get("scoreUnit"));
+        List<Object> histogram = (List<Object>) primary.get("rawDataHistogram");
+        List<Object> iterations = (List<Object>) histogram.get(0);
+        Assertions.assertEquals(3, iterations.size());
+        for (Object iteration: iterations) {
+            for (Object bucket: (List<Object>) iteration) {
+                Assertions.assertEquals(2, ((List<Object>) bucket).size());
+            }
+        }
+        // The secondary results of the percentiles are named with a middle dot, the file is in UTF-8
+        Map<String, Object> secondaries = (Map<String, Object>) result.get("secondaryMetrics");
+        Assertions.assertTrue(secondaries.containsKey("queryAnswer\u00b7p0.99"));
+    }
+
+    @Test
+    public void strings() {
+        Assertions.assertEquals("a\"b\\c/d\n\tA\u00e9", Json.parse("\"a\\\"b\\\\c\\/d\\n\\t\\u0041\\u00E9\""));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parse("\"\\u00"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parse("\"\\u00\""));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parse("\"\\u00zz\""));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parse("\"abc"));
+    }
+
+    @Test
+    public void numbers() {
+        Assertions.assertEquals(0.0, Json.parse("0"));
+        Assertions.assertEquals(-1500.0, Json.parse("-1.5e3"));
+        Assertions.assertEquals(0.025, Json.parse("2.5E-2"));
+        Assertions.assertEquals(12.0, Json.parse(" 12 "));
+        for (String invalid: new String[] {"+-.", "+1", "-", ".5", "1.", "1e", "1e+", "01", "--1", "1.2.3"}) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parse(invalid), invalid);
+        }
+        // JMH writes the non finite values as strings
+        Assertions.assertTrue(Double.isNaN(Json.toDouble(Json.parse("\"NaN\""))));
+        Assertions.assertEquals(Double.POSITIVE_INFINITY, Json.toDouble(Json.parse("\"Infinity\"")));
+    }
+
+    @Test
+    public void structures() {
+        Assertions.assertEquals(Map.of("a", List.of(1.0, true, "x"), "b", Map.of()), Json.parse("{\"a\": [1, true, \"x\"], \"b\": {}}"));
+        Assertions.assertEquals(List.of(), Json.parse("[ ]"));
+        Assertions.assertNull(Json.parse("null"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parse("[1, 2"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parse("{\"a\" 1}"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parse("[1] 2"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parse("nul"));
+    }
+
+}